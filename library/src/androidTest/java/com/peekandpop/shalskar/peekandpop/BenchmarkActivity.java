@@ -0,0 +1,27 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Empty activity hosting the PeekAndPop under benchmark.
+ */
+public class BenchmarkActivity extends Activity {
+
+    private View longClickView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        FrameLayout contentView = new FrameLayout(this);
+        longClickView = new View(this);
+        contentView.addView(longClickView, new FrameLayout.LayoutParams(200, 200));
+        setContentView(contentView);
+    }
+
+    public View getLongClickView() {
+        return longClickView;
+    }
+}
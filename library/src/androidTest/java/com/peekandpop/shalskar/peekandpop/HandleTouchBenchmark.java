@@ -0,0 +1,155 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Replays synthetic move events against {@link PeekAndPop#handleTouch(View, MotionEvent, int)}
+ * while a peek is showing and reports the time and memory allocated per event.
+ * <p/>
+ * Results are logged with the tag "HandleTouchBenchmark", e.g.
+ * adb logcat -s HandleTouchBenchmark
+ */
+public class HandleTouchBenchmark extends ActivityInstrumentationTestCase2<BenchmarkActivity> {
+
+    private static final String TAG = "HandleTouchBenchmark";
+
+    private static final int HOLD_VIEW_COUNT = 16;
+    private static final int PATH_LENGTH = 500;
+    private static final int WARM_UP_ROUNDS = 4;
+    private static final int MEASURED_ROUNDS = 40;
+
+    private PeekAndPop peekAndPop;
+    private View longClickView;
+    private MotionEvent[] moveEvents;
+    private long nanosPerEvent;
+    private long bytesPerEvent;
+
+    public HandleTouchBenchmark() {
+        super(BenchmarkActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final BenchmarkActivity activity = getActivity();
+        longClickView = activity.getLongClickView();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                peekAndPop = new PeekAndPop.Builder(activity)
+                        .peekLayout(com.peekandpop.shalskar.peekandpop.test.R.layout.benchmark_peek_view)
+                        .blurBackground(false)
+                        .onLongHoldListener(new PeekAndPop.OnLongHoldListener() {
+                            @Override
+                            public void onEnter(View view, int position) {
+                            }
+
+                            @Override
+                            public void onLongHold(View view, int position) {
+                            }
+                        })
+                        .onHoldAndReleaseListener(new PeekAndPop.OnHoldAndReleaseListener() {
+                            @Override
+                            public void onHold(View view, int position) {
+                            }
+
+                            @Override
+                            public void onLeave(View view, int position) {
+                            }
+
+                            @Override
+                            public void onRelease(View view, int position) {
+                            }
+                        })
+                        .build();
+
+                for (int i = 1; i <= HOLD_VIEW_COUNT; i++) {
+                    int id = activity.getResources().getIdentifier("hold_view_" + i, "id", activity.getPackageName());
+                    if (i % 2 == 0)
+                        peekAndPop.addLongHoldView(id, true);
+                    else
+                        peekAndPop.addHoldAndReleaseView(id);
+                }
+                peekAndPop.peek(longClickView, 0);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        moveEvents = createMoveEvents(peekAndPop.getPeekView());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (MotionEvent event : moveEvents) {
+            event.recycle();
+        }
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                peekAndPop.destroy();
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testMoveEvents() throws Throwable {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                replay(WARM_UP_ROUNDS);
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocSize();
+                long start = System.nanoTime();
+
+                replay(MEASURED_ROUNDS);
+
+                long elapsed = System.nanoTime() - start;
+                long allocated = Debug.getThreadAllocSize();
+                Debug.stopAllocCounting();
+
+                int events = MEASURED_ROUNDS * moveEvents.length;
+                nanosPerEvent = elapsed / events;
+                bytesPerEvent = allocated / events;
+                Log.i(TAG, "handleTouch ACTION_MOVE: " + nanosPerEvent + " ns/event, "
+                        + ((double) allocated / events) + " bytes/event over " + events + " events");
+            }
+        });
+
+        assertEquals("handleTouch allocated on ACTION_MOVE", 0, bytesPerEvent);
+    }
+
+    private void replay(int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (MotionEvent event : moveEvents) {
+                peekAndPop.handleTouch(longClickView, event, 0);
+            }
+        }
+    }
+
+    /**
+     * A zig-zag path across the whole peek view, moving in and out of every hold view.
+     */
+    private MotionEvent[] createMoveEvents(View peekView) {
+        int[] location = new int[2];
+        peekView.getLocationOnScreen(location);
+        int width = peekView.getWidth();
+        int height = peekView.getHeight();
+
+        MotionEvent[] events = new MotionEvent[PATH_LENGTH];
+        long downTime = SystemClock.uptimeMillis();
+        for (int i = 0; i < PATH_LENGTH; i++) {
+            float progress = (float) i / PATH_LENGTH;
+            float x = location[0] + (i % 50) * width / 50f;
+            float y = location[1] + progress * height;
+            events[i] = MotionEvent.obtain(downTime, downTime + i * 8, MotionEvent.ACTION_MOVE, x, y, 0);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,786 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.LightingColorFilter;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.TransitionDrawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+/**
+ * Helper class for blurring the content view behind the peek view and setting it as the
+ * peekLayout background.
+ * <p/>
+ * The blur can either be done synchronously, or asynchronously where a plain dim scrim is shown
+ * straight away and the blur is cross faded in once it has been computed on a background thread.
+ * <p/>
+ * If the blur cache is enabled, the last blur is kept and reused until the content view draws
+ * or scrolls again. It can also be pre-computed while the UI thread is idle, so a peek can show
+ * a blurred background without any work at all.
+ * <p/>
+ * A single channel luminance blur from {@link BlurBuilder#setLowPrecision(boolean)} is drawn as a
+ * gradient from the dim color to the luminance tint.
+ * <p/>
+ * With a live blur, the content view keeps being captured and blurred while the peek view is
+ * showing, see {@link #setLiveBlur(int)}.
+ */
+public class BackgroundBlurHelper {
+
+    private static final int SCRIM_COLOR = 0x88000000;
+    private static final int CROSS_FADE_DURATION = 150;
+    private static final long PRE_BLUR_DELAY = 300;
+
+    // A live blur capture taking longer than this on the UI thread lowers the blur scale
+    private static final long LIVE_BLUR_FRAME_BUDGET_NANOS = 4000000;
+    private static final float LIVE_BLUR_SCALE_STEP = 0.8f;
+    private static final float MIN_LIVE_BLUR_SCALE = 0.05f;
+    private static final int LIVE_BLUR_RECOVER_FRAMES = 30;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    public static final float DEFAULT_DIM_AMOUNT = 0.33f;
+    public static final int DEFAULT_DIM_COLOR = Color.BLACK;
+
+    private final Context context;
+    private final ViewGroup peekLayout;
+    private final View contentView;
+    private final BlurBuilder blurBuilder;
+
+    private BitmapDrawable blurredBackground;
+    private ColorFilter dimFilter;
+    private float dimAmount;
+    private int dimColor;
+    private int luminanceTint = Color.WHITE;
+    private int luminanceDarkColor;
+    private int luminanceLightColor;
+    private TransitionDrawable transitionBackground;
+    private ColorDrawable scrimBackground;
+
+    private HandlerThread blurThread;
+    private Handler blurHandler;
+    private final Handler mainHandler;
+
+    // Incremented for every blur request and every cancel, so stale results can be dropped
+    private volatile int blurGeneration;
+    private volatile int blurredGeneration;
+    private volatile Bitmap blurredBitmap;
+    // Incremented under the blur builder's lock whenever its buffers are released
+    private volatile int bufferGeneration;
+
+    private boolean peekShowing;
+
+    private boolean cacheEnabled;
+    private boolean preBlurWhenIdle;
+    private volatile boolean tracing;
+    private boolean cacheValid;
+    // False if the content view has changed since the last capture
+    private boolean captureClean;
+    private boolean preBlurQueued;
+    private boolean listenersAdded;
+
+    private int liveBlurFps;
+    private long liveBlurIntervalNanos;
+    private boolean liveBlurRunning;
+    // Only one blur is in flight at a time, live frames are skipped until it has been delivered
+    private boolean blurInFlight;
+    private boolean liveFrameInFlight;
+    private long lastLiveCaptureNanos;
+    private float liveBlurBaseScale;
+    private float pendingLiveBlurScale;
+    private int liveBlurFramesUnderBudget;
+    private volatile long lastBlurNanos;
+    private LiveBlurFrameDriver liveBlurFrameDriver;
+    // The live blur is drawn from this copy, so the blur thread never writes to a bitmap being drawn
+    private Bitmap liveFrontBitmap;
+    private Canvas liveFrontCanvas;
+    private Paint liveCopyPaint;
+
+    private final Runnable blurRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int generation = blurGeneration;
+            int buffers = bufferGeneration;
+            // The blur doesn't hold the blur builder's lock, so the UI thread can keep capturing
+            long startTime = System.nanoTime();
+            Bitmap bitmap = blurBuilder.blurCapture();
+            lastBlurNanos = System.nanoTime() - startTime;
+            // Only held while delivering so the buffers can't be released between checking and posting
+            synchronized (blurBuilder) {
+                if (bitmap == null || buffers != bufferGeneration)
+                    return;
+                blurredBitmap = bitmap;
+                blurredGeneration = generation;
+                mainHandler.removeCallbacks(deliverRunnable);
+                mainHandler.post(deliverRunnable);
+            }
+        }
+    };
+
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Bitmap bitmap = blurredBitmap;
+            if (bitmap == null)
+                return;
+            cacheValid = captureClean;
+            // A stale blur from before the last cancel leaves the current live blur alone
+            if (blurredGeneration != blurGeneration)
+                return;
+
+            boolean liveFrame = liveFrameInFlight;
+            blurInFlight = false;
+            liveFrameInFlight = false;
+            if (!peekShowing)
+                return;
+            if (liveBlurFps > 0)
+                bitmap = copyToLiveFront(bitmap);
+            if (liveFrame)
+                showLiveFrame(bitmap);
+            else
+                crossFadeBlurredBackground(bitmap);
+        }
+    };
+
+    private final Runnable preBlurRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!preBlurQueued) {
+                preBlurQueued = true;
+                Looper.myQueue().addIdleHandler(preBlurIdleHandler);
+            }
+        }
+    };
+
+    private final MessageQueue.IdleHandler preBlurIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            preBlurQueued = false;
+            if (cacheEnabled && !cacheValid && !peekShowing && contentView.getWidth() > 0)
+                preBlur();
+            return false;
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener onScrollChangedListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            onContentChanged();
+        }
+    };
+
+    private ViewTreeObserver.OnDrawListener onDrawListener;
+
+    public BackgroundBlurHelper(@NonNull Context context, @NonNull ViewGroup peekLayout, @NonNull View contentView) {
+        this.context = context;
+        this.peekLayout = peekLayout;
+        this.contentView = contentView;
+        this.blurBuilder = new BlurBuilder(context);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        setDim(DEFAULT_DIM_AMOUNT, DEFAULT_DIM_COLOR);
+    }
+
+    /**
+     * Set how much the blurred background is dimmed. The dim is applied as a color filter when
+     * the background is drawn, so the blurred bitmap is never redrawn to darken it.
+     *
+     * @param dimAmount amount between 0 (no dim) and 1 (solid dim color)
+     * @param dimColor  color the background is dimmed towards
+     */
+    public void setDim(float dimAmount, @ColorInt int dimColor) {
+        if (dimAmount < 0 || dimAmount > 1)
+            throw new IllegalArgumentException("Dim amount must be between 0 and 1.");
+
+        int keep = Math.round(255 * (1 - dimAmount));
+        int multiply = Color.rgb(keep, keep, keep);
+        int add = Color.rgb(Math.round(Color.red(dimColor) * dimAmount),
+                Math.round(Color.green(dimColor) * dimAmount),
+                Math.round(Color.blue(dimColor) * dimAmount));
+        dimFilter = new LightingColorFilter(multiply, add);
+        this.dimAmount = dimAmount;
+        this.dimColor = dimColor;
+
+        // Dimming the tinted luminance gives the same colors as the dim filter would
+        luminanceDarkColor = add;
+        luminanceLightColor = Color.rgb(Math.min(255, Color.red(luminanceTint) * keep / 255 + Color.red(add)),
+                Math.min(255, Color.green(luminanceTint) * keep / 255 + Color.green(add)),
+                Math.min(255, Color.blue(luminanceTint) * keep / 255 + Color.blue(add)));
+
+        if (blurredBackground instanceof LuminanceDrawable)
+            ((LuminanceDrawable) blurredBackground).setColors(luminanceDarkColor, luminanceLightColor);
+        else if (blurredBackground != null)
+            blurredBackground.setColorFilter(dimFilter);
+    }
+
+    /**
+     * Set the color the brightest parts of a luminance blur are drawn in, defaults to white.
+     * Only used with a low precision blur on the RenderScript engine.
+     */
+    public void setLuminanceTint(@ColorInt int luminanceTint) {
+        this.luminanceTint = luminanceTint;
+        setDim(dimAmount, dimColor);
+    }
+
+    private BitmapDrawable createBlurredBackground(@NonNull Bitmap bitmap) {
+        boolean tracing = this.tracing;
+        if (tracing)
+            PeekTrace.beginSection("BackgroundBlurHelper.dim");
+        BitmapDrawable drawable;
+        if (bitmap.getConfig() == Bitmap.Config.ALPHA_8) {
+            LuminanceDrawable luminanceDrawable = new LuminanceDrawable(context.getResources(), bitmap);
+            luminanceDrawable.setColors(luminanceDarkColor, luminanceLightColor);
+            drawable = luminanceDrawable;
+        } else {
+            drawable = new BitmapDrawable(context.getResources(), bitmap);
+            drawable.setColorFilter(dimFilter);
+        }
+        if (tracing)
+            PeekTrace.endSection();
+        return drawable;
+    }
+
+    public BlurBuilder getBlurBuilder() {
+        return blurBuilder;
+    }
+
+    /**
+     * Only blur the parts of the content view which are visible around the peek view, see
+     * {@link BlurBuilder#setRegionOfInterest(Rect, Rect)}. The cached blur is dropped if the
+     * region changes.
+     */
+    public void setRegionOfInterest(@Nullable Rect visible, @Nullable Rect covered) {
+        if (blurBuilder.setRegionOfInterest(visible, covered))
+            cacheValid = false;
+    }
+
+    /**
+     * Keep the last blur and reuse it until the content view changes. Only supported on
+     * API 16 and above, where draws of the content view can be listened for.
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        // A live blur is never reused, it keeps changing
+        this.cacheEnabled = cacheEnabled && Build.VERSION.SDK_INT >= 16 && liveBlurFps == 0;
+        cacheValid = false;
+        if (this.cacheEnabled)
+            addContentListeners();
+        else
+            removeContentListeners();
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * Pre-compute the cached blur while the UI thread is idle, requires the cache to be enabled.
+     */
+    public void setPreBlurWhenIdle(boolean preBlurWhenIdle) {
+        this.preBlurWhenIdle = preBlurWhenIdle;
+        if (preBlurWhenIdle && cacheEnabled && !cacheValid)
+            mainHandler.postDelayed(preBlurRunnable, PRE_BLUR_DELAY);
+    }
+
+    /**
+     * Add trace sections around dimming and live blur frames, see {@link PeekTrace}.
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    public boolean isPreBlurWhenIdle() {
+        return preBlurWhenIdle;
+    }
+
+    /**
+     * Keep capturing and blurring the content view while the peek view is showing, for video or
+     * animated content behind it. Frames are skipped while the last blur is still in progress, and
+     * the blur scale is lowered whenever a capture takes too long on the UI thread. The live blur
+     * stops when the peek view pops, and disables the blur cache.
+     *
+     * @param fps frames per second to blur at, e.g. 15 to 30, or 0 to only blur once per peek
+     */
+    public void setLiveBlur(int fps) {
+        if (fps < 0)
+            throw new IllegalArgumentException("Live blur fps must not be negative.");
+        liveBlurFps = fps;
+        liveBlurIntervalNanos = fps > 0 ? 1000000000L / fps : 0;
+        if (fps > 0)
+            setCacheEnabled(false);
+        else
+            stopLiveBlur();
+    }
+
+    public int getLiveBlurFps() {
+        return liveBlurFps;
+    }
+
+    /**
+     * Blur the content view on the UI thread and set it as the peekLayout background.
+     * The existing background drawable is only replaced if the blurred bitmap changes.
+     */
+    public void blurBackground() {
+        blurGeneration++;
+        peekShowing = true;
+
+        if (showCachedBlur())
+            return;
+
+        Bitmap bitmap = blurBuilder.blurView(contentView);
+        blurredBitmap = bitmap;
+        captureClean = true;
+        cacheValid = true;
+        if (liveBlurFps > 0) {
+            bitmap = copyToLiveFront(bitmap);
+            startLiveBlur();
+        }
+        if (blurredBackground != null && blurredBackground.getBitmap() == bitmap && transitionBackground == null) {
+            peekLayout.invalidate();
+            return;
+        }
+
+        blurredBackground = createBlurredBackground(bitmap);
+        transitionBackground = null;
+        setPeekLayoutBackground(blurredBackground);
+    }
+
+    /**
+     * Show a plain dim scrim straight away, capture the content view and blur it on a background
+     * thread. Once the blur is ready it is cross faded into the peekLayout background, unless
+     * {@link #cancel()} has been called in the meantime.
+     */
+    public void blurBackgroundAsync() {
+        blurGeneration++;
+        peekShowing = true;
+
+        if (showCachedBlur())
+            return;
+
+        if (transitionBackground != null) {
+            transitionBackground.resetTransition();
+            if (peekLayout.getBackground() != transitionBackground)
+                setPeekLayoutBackground(transitionBackground);
+        } else {
+            setPeekLayoutBackground(new ColorDrawable(SCRIM_COLOR));
+        }
+
+        capture();
+        postBlur();
+        if (liveBlurFps > 0) {
+            startLiveBlur();
+            blurInFlight = true;
+        }
+    }
+
+    /**
+     * If the cached blur is still valid, set it as the peekLayout background.
+     *
+     * @return true if the cached blur was used
+     */
+    private boolean showCachedBlur() {
+        if (!cacheEnabled || !cacheValid || blurredBitmap == null)
+            return false;
+
+        if (blurredBackground == null || blurredBackground.getBitmap() != blurredBitmap)
+            blurredBackground = createBlurredBackground(blurredBitmap);
+        if (peekLayout.getBackground() != blurredBackground)
+            setPeekLayoutBackground(blurredBackground);
+        return true;
+    }
+
+    /**
+     * Capture and blur the content view for the cache, without touching the peekLayout background.
+     */
+    private void preBlur() {
+        capture();
+        postBlur();
+    }
+
+    private void capture() {
+        blurBuilder.capture(contentView);
+        captureClean = true;
+        cacheValid = false;
+    }
+
+    private void postBlur() {
+        if (blurThread == null) {
+            blurThread = new HandlerThread("PeekAndPop-Blur");
+            blurThread.start();
+            blurHandler = new Handler(blurThread.getLooper());
+        }
+        blurHandler.removeCallbacks(blurRunnable);
+        blurHandler.post(blurRunnable);
+    }
+
+    private void crossFadeBlurredBackground(@NonNull Bitmap bitmap) {
+        if (transitionBackground == null || blurredBackground == null || blurredBackground.getBitmap() != bitmap) {
+            blurredBackground = createBlurredBackground(bitmap);
+            transitionBackground = new TransitionDrawable(new Drawable[]{new ColorDrawable(SCRIM_COLOR), blurredBackground});
+            setPeekLayoutBackground(transitionBackground);
+        }
+        transitionBackground.startTransition(CROSS_FADE_DURATION);
+    }
+
+    /**
+     * Drop any blur which is still being computed, called when the peek view pops.
+     */
+    public void cancel() {
+        blurGeneration++;
+        stopLiveBlur();
+    }
+
+    private void startLiveBlur() {
+        if (liveBlurRunning)
+            return;
+        liveBlurRunning = true;
+        liveBlurBaseScale = blurBuilder.getBitmapScale();
+        pendingLiveBlurScale = 0;
+        liveBlurFramesUnderBudget = 0;
+        lastBlurNanos = 0;
+        // The first live frame is captured an interval after the peek's own blur
+        lastLiveCaptureNanos = System.nanoTime();
+        if (liveBlurFrameDriver == null) {
+            liveBlurFrameDriver = Build.VERSION.SDK_INT >= 16 ? new ChoreographerLiveBlurFrameDriver()
+                    : new HandlerLiveBlurFrameDriver();
+        }
+        liveBlurFrameDriver.postFrame();
+    }
+
+    private void stopLiveBlur() {
+        if (!liveBlurRunning)
+            return;
+        liveBlurRunning = false;
+        blurInFlight = false;
+        liveFrameInFlight = false;
+        liveBlurFrameDriver.removeFrame();
+        setLiveBlurScale(liveBlurBaseScale);
+    }
+
+    private void doLiveBlurFrame(long frameTimeNanos) {
+        if (!liveBlurRunning)
+            return;
+        if (!blurInFlight && frameTimeNanos - lastLiveCaptureNanos >= liveBlurIntervalNanos) {
+            lastLiveCaptureNanos = frameTimeNanos;
+            captureLiveFrame();
+        }
+        liveBlurFrameDriver.postFrame();
+    }
+
+    private void captureLiveFrame() {
+        boolean tracing = this.tracing;
+        if (tracing)
+            PeekTrace.beginSection("BackgroundBlurHelper.liveBlur");
+        try {
+            // A new scale is applied before capturing, changing it releases the captured buffers
+            boolean scaleChanged = pendingLiveBlurScale != 0 && setLiveBlurScale(pendingLiveBlurScale);
+            pendingLiveBlurScale = 0;
+
+            long startTime = System.nanoTime();
+            // The peekLayout is part of the content view, hide it so the blur doesn't capture itself
+            int visibility = peekLayout.getVisibility();
+            peekLayout.setVisibility(View.INVISIBLE);
+            blurBuilder.capture(contentView);
+            peekLayout.setVisibility(visibility);
+            // The first capture at a new scale also allocates its buffers, so it isn't measured
+            if (!scaleChanged)
+                updateLiveBlurScale(System.nanoTime() - startTime);
+
+            blurInFlight = true;
+            liveFrameInFlight = true;
+            postBlur();
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
+        }
+    }
+
+    /**
+     * Lower the blur scale if capturing took longer than the frame budget, or if blurring took
+     * longer than the live blur interval. Raise it back once it has been under budget for a while.
+     */
+    private void updateLiveBlurScale(long captureNanos) {
+        float scale = blurBuilder.getBitmapScale();
+        if (captureNanos > LIVE_BLUR_FRAME_BUDGET_NANOS || lastBlurNanos > liveBlurIntervalNanos) {
+            liveBlurFramesUnderBudget = 0;
+            pendingLiveBlurScale = Math.max(Math.min(MIN_LIVE_BLUR_SCALE, liveBlurBaseScale), scale * LIVE_BLUR_SCALE_STEP);
+        } else if (scale < liveBlurBaseScale && ++liveBlurFramesUnderBudget >= LIVE_BLUR_RECOVER_FRAMES) {
+            liveBlurFramesUnderBudget = 0;
+            pendingLiveBlurScale = Math.min(liveBlurBaseScale, scale / LIVE_BLUR_SCALE_STEP);
+        }
+    }
+
+    /**
+     * @return true if the scale changed
+     */
+    private boolean setLiveBlurScale(float scale) {
+        synchronized (blurBuilder) {
+            if (blurBuilder.getBitmapScale() == scale)
+                return false;
+            // The blurred bitmap goes back to the bitmap pool along with the other buffers
+            blurredBitmap = null;
+            bufferGeneration++;
+            blurBuilder.setBitmapScale(scale);
+            return true;
+        }
+    }
+
+    /**
+     * Copy a blurred bitmap into the bitmap the live blur is drawn from.
+     */
+    private Bitmap copyToLiveFront(@NonNull Bitmap bitmap) {
+        synchronized (blurBuilder) {
+            if (liveFrontBitmap == null || liveFrontBitmap.getWidth() != bitmap.getWidth()
+                    || liveFrontBitmap.getHeight() != bitmap.getHeight() || liveFrontBitmap.getConfig() != bitmap.getConfig()) {
+                // Only drawn by the background, which is replaced with the new front bitmap straight away
+                blurBuilder.getBitmapPool().put(liveFrontBitmap);
+                liveFrontBitmap = blurBuilder.getBitmapPool().get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+                liveFrontCanvas = new Canvas(liveFrontBitmap);
+            }
+            if (liveCopyPaint == null) {
+                liveCopyPaint = new Paint();
+                liveCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+            }
+            liveFrontCanvas.drawBitmap(bitmap, 0, 0, liveCopyPaint);
+            return liveFrontBitmap;
+        }
+    }
+
+    private void showLiveFrame(@NonNull Bitmap bitmap) {
+        if (blurredBackground != null && blurredBackground.getBitmap() == bitmap) {
+            blurredBackground.invalidateSelf();
+            return;
+        }
+        blurredBackground = createBlurredBackground(bitmap);
+        transitionBackground = null;
+        setPeekLayoutBackground(blurredBackground);
+    }
+
+    private void releaseLiveFront() {
+        if (liveFrontBitmap != null) {
+            blurBuilder.getBitmapPool().put(liveFrontBitmap);
+            liveFrontBitmap = null;
+            liveFrontCanvas = null;
+        }
+    }
+
+    /**
+     * Called once the peek view has popped and is hidden again.
+     */
+    public void onPeekHidden() {
+        peekShowing = false;
+        // Draws while peeking can't be told apart from the peekLayout's own, and the app may have
+        // changed the content in onPeek, onPop or a fling, so the cached blur is assumed stale
+        onContentChanged();
+        // Without the cache the blur is never shown again, so don't keep it set on the peekLayout
+        if (!cacheEnabled)
+            clearBlurredBackground();
+    }
+
+    /**
+     * Release the blur when memory is low, the next peek blurs the content view from scratch.
+     * Nothing is released while the peek view is showing.
+     *
+     * @param level the trim level from {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public void onTrimMemory(int level) {
+        if (peekShowing || level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            return;
+
+        cancel();
+        releaseBlur();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+            quitBlurThread();
+    }
+
+    /**
+     * Drop the blurred background and release the blur builder, waiting for any running blur.
+     */
+    private void releaseBlur() {
+        synchronized (blurBuilder) {
+            mainHandler.removeCallbacks(deliverRunnable);
+            bufferGeneration++;
+            clearBlurredBackground();
+        }
+        // Not under the lock, the running blur needs it to finish
+        blurBuilder.release();
+    }
+
+    private void clearBlurredBackground() {
+        cacheValid = false;
+        blurredBitmap = null;
+        if (blurredBackground != null || transitionBackground != null) {
+            if (scrimBackground == null)
+                scrimBackground = new ColorDrawable(SCRIM_COLOR);
+            setPeekLayoutBackground(scrimBackground);
+            blurredBackground = null;
+            transitionBackground = null;
+        }
+        releaseLiveFront();
+    }
+
+    private void quitBlurThread() {
+        if (blurThread != null) {
+            blurHandler.removeCallbacks(blurRunnable);
+            blurThread.quit();
+            blurThread = null;
+            blurHandler = null;
+        }
+    }
+
+    private void onContentChanged() {
+        if (peekShowing)
+            return;
+        captureClean = false;
+        cacheValid = false;
+        if (preBlurWhenIdle) {
+            mainHandler.removeCallbacks(preBlurRunnable);
+            mainHandler.postDelayed(preBlurRunnable, PRE_BLUR_DELAY);
+        }
+    }
+
+    private void addContentListeners() {
+        if (listenersAdded)
+            return;
+        listenersAdded = true;
+
+        ViewTreeObserver viewTreeObserver = contentView.getViewTreeObserver();
+        viewTreeObserver.addOnScrollChangedListener(onScrollChangedListener);
+        if (onDrawListener == null) {
+            onDrawListener = new ViewTreeObserver.OnDrawListener() {
+                @Override
+                public void onDraw() {
+                    onContentChanged();
+                }
+            };
+        }
+        viewTreeObserver.addOnDrawListener(onDrawListener);
+    }
+
+    private void removeContentListeners() {
+        if (!listenersAdded)
+            return;
+        listenersAdded = false;
+
+        ViewTreeObserver viewTreeObserver = contentView.getViewTreeObserver();
+        viewTreeObserver.removeOnScrollChangedListener(onScrollChangedListener);
+        if (onDrawListener != null)
+            viewTreeObserver.removeOnDrawListener(onDrawListener);
+        mainHandler.removeCallbacks(preBlurRunnable);
+        if (preBlurQueued) {
+            Looper.myQueue().removeIdleHandler(preBlurIdleHandler);
+            preBlurQueued = false;
+        }
+    }
+
+    private void setPeekLayoutBackground(@Nullable Drawable background) {
+        if (Build.VERSION.SDK_INT >= 16) {
+            peekLayout.setBackground(null);
+            peekLayout.setBackground(background);
+        } else {
+            peekLayout.setBackgroundDrawable(null);
+            peekLayout.setBackgroundDrawable(background);
+        }
+    }
+
+    /**
+     * Remove the blurred background and release the blur buffers and background thread.
+     */
+    public void release() {
+        cancel();
+        removeContentListeners();
+        releaseBlur();
+        quitBlurThread();
+    }
+
+    /**
+     * Draws a single channel luminance bitmap over the dark color, in the light color.
+     */
+    private static class LuminanceDrawable extends BitmapDrawable {
+
+        private final Paint darkPaint = new Paint();
+
+        LuminanceDrawable(Resources resources, Bitmap bitmap) {
+            super(resources, bitmap);
+        }
+
+        void setColors(@ColorInt int darkColor, @ColorInt int lightColor) {
+            Paint paint = getPaint();
+            int alpha = paint.getAlpha();
+            darkPaint.setColor(darkColor);
+            // An ALPHA_8 bitmap is drawn in the paint's color
+            paint.setColor(lightColor);
+            paint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            darkPaint.setAlpha(getPaint().getAlpha());
+            canvas.drawRect(getBounds(), darkPaint);
+            super.draw(canvas);
+        }
+    }
+
+    private interface LiveBlurFrameDriver {
+        void postFrame();
+
+        void removeFrame();
+    }
+
+    @TargetApi(16)
+    private class ChoreographerLiveBlurFrameDriver implements LiveBlurFrameDriver, Choreographer.FrameCallback {
+
+        @Override
+        public void postFrame() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void removeFrame() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            doLiveBlurFrame(frameTimeNanos);
+        }
+    }
+
+    private class HandlerLiveBlurFrameDriver implements LiveBlurFrameDriver, Runnable {
+
+        @Override
+        public void postFrame() {
+            mainHandler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+
+        @Override
+        public void removeFrame() {
+            mainHandler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            doLiveBlurFrame(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * A process wide pool of bitmaps which {@link BlurBuilder} borrows its buffers from, so the
+ * buffers released by one screen are reused by the next instead of being reallocated.
+ * <p/>
+ * On API 19 and above a pooled bitmap is reconfigured to the size requested, as long as its
+ * allocation is big enough and falls in the same size class, where size classes step by a quarter
+ * between powers of two. Below API 19 only bitmaps of exactly the same size and config are reused.
+ * <p/>
+ * The pool keeps at most maxBytes of bitmaps, evicting the least recently returned bitmaps first.
+ * It is safe to use from any thread.
+ */
+public class BlurBitmapPool {
+
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+    private static final int MIN_SIZE_CLASS = 4096;
+
+    private static BlurBitmapPool instance;
+
+    // Least recently returned first
+    private final ArrayList<Bitmap> bitmaps = new ArrayList<>();
+    private long maxBytes;
+    private long currentBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    @NonNull
+    public static synchronized BlurBitmapPool getInstance() {
+        if (instance == null)
+            instance = new BlurBitmapPool(DEFAULT_MAX_BYTES);
+        return instance;
+    }
+
+    public BlurBitmapPool(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Get a mutable bitmap of the size and config, reusing a pooled bitmap if one fits.
+     * The contents of a reused bitmap are undefined.
+     */
+    @NonNull
+    public synchronized Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        int index = findBitmap(width, height, config);
+        if (index < 0) {
+            missCount++;
+            return Bitmap.createBitmap(width, height, config);
+        }
+
+        Bitmap bitmap = bitmaps.remove(index);
+        currentBytes -= getAllocationBytes(bitmap);
+        if (Build.VERSION.SDK_INT >= 19)
+            reconfigure(bitmap, width, height, config);
+        hitCount++;
+        return bitmap;
+    }
+
+    /**
+     * Return a bitmap to the pool, it must no longer be drawn or written to by the caller.
+     * Bitmaps bigger than the pool are recycled straight away.
+     */
+    public synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+        if (!bitmap.isMutable() || getAllocationBytes(bitmap) > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        bitmaps.add(bitmap);
+        currentBytes += getAllocationBytes(bitmap);
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * @return the index of the best fitting pooled bitmap, or -1 if none fit
+     */
+    private int findBitmap(int width, int height, Bitmap.Config config) {
+        int best = -1;
+        if (Build.VERSION.SDK_INT >= 19) {
+            int requiredBytes = width * height * getBytesPerPixel(config);
+            int maxAllocationBytes = getSizeClass(requiredBytes);
+            int bestBytes = Integer.MAX_VALUE;
+            for (int i = 0; i < bitmaps.size(); i++) {
+                int bytes = getAllocationBytes(bitmaps.get(i));
+                if (bytes >= requiredBytes && bytes <= maxAllocationBytes && bytes < bestBytes) {
+                    best = i;
+                    bestBytes = bytes;
+                }
+            }
+        } else {
+            for (int i = bitmaps.size() - 1; i >= 0; i--) {
+                Bitmap bitmap = bitmaps.get(i);
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config)
+                    return i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Round the byte count up to its size class, at most a quarter of the way to the next power
+     * of two, so a reused bitmap never wastes more than a quarter of its allocation.
+     */
+    static int getSizeClass(int bytes) {
+        if (bytes <= MIN_SIZE_CLASS)
+            return MIN_SIZE_CLASS;
+        int step = Integer.highestOneBit(bytes) / 4;
+        return (int) (((long) bytes + step - 1) / step * step);
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8)
+            return 1;
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444)
+            return 2;
+        return 4;
+    }
+
+    private static int getAllocationBytes(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= 19)
+            return getAllocationByteCount(bitmap);
+        return bitmap.getByteCount();
+    }
+
+    @TargetApi(19)
+    private static int getAllocationByteCount(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @TargetApi(19)
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config)
+            bitmap.reconfigure(width, height, config);
+    }
+
+    /**
+     * Recycle the least recently returned bitmaps until the pool holds at most maxBytes.
+     */
+    public synchronized void trimToSize(long maxBytes) {
+        while (currentBytes > maxBytes && !bitmaps.isEmpty()) {
+            Bitmap bitmap = bitmaps.remove(0);
+            currentBytes -= getAllocationBytes(bitmap);
+            bitmap.recycle();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Evict pooled bitmaps depending on how low memory is.
+     *
+     * @param level the trim level from {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            trimToSize(0);
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            trimToSize(maxBytes / 2);
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * @param maxBytes the most bytes of bitmaps kept in the pool, 0 to disable pooling
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Max bytes must not be negative.");
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the bytes of bitmaps currently kept in the pool
+     */
+    public synchronized long size() {
+        return currentBytes;
+    }
+
+    /**
+     * @return the number of {@link #get(int, int, Bitmap.Config)} calls which reused a bitmap
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of {@link #get(int, int, Bitmap.Config)} calls which allocated a bitmap
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of bitmaps recycled to keep the pool within its budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlurBitmapPool[size=" + currentBytes + " maxBytes=" + maxBytes + " hits=" + hitCount
+                + " misses=" + missCount + " evictions=" + evictionCount + "]";
+    }
+}
@@ -4,56 +4,682 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorFilter;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
 import android.graphics.LightingColorFilter;
 import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.os.Build;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 
+/**
+ * Blurs screenshots of a view for the peek background.
+ * <p/>
+ * The bitmaps and the {@link BlurEngine}'s resources are kept between blurs and reused for as long
+ * as the size of the blurred view stays the same. The bitmaps are borrowed from a
+ * {@link BlurBitmapPool} and returned to it when the size changes or {@link #release()} is called,
+ * call it once the blur is no longer needed.
+ * <p/>
+ * Capturing must happen on the UI thread but the blur itself can be done on a background thread,
+ * see {@link #capture(View)} and {@link #blurCapture()}. The capture and the blur use separate
+ * buffers, a blur takes over the latest capture under a short lock and then blurs it without
+ * holding the lock, so the UI thread can capture again while the blur is running.
+ * <p/>
+ * In low precision mode the buffers use half or a quarter of the bytes, see
+ * {@link #setLowPrecision(boolean)}. With a region of interest, only the visible parts of the view
+ * which aren't covered are captured and blurred, see {@link #setRegionOfInterest(Rect, Rect)}.
+ */
 public class BlurBuilder {
-    private static final float BITMAP_SCALE = 0.2f;
+    public static final float DEFAULT_BITMAP_SCALE = 0.2f;
+    public static final int DEFAULT_REGION_FILL_COLOR = Color.GRAY;
     private static final float BLUR_RADIUS = 6.0f;
+    // Tiles are padded so the blur near their edges samples the same pixels as a whole blur would
+    private static final int TILE_PADDING = (int) Math.ceil(BLUR_RADIUS);
+    private static final int MAX_TILES = 4;
+    // Rec. 601 luma weights, written to the alpha channel of luminance captures
+    private static final float[] LUMINANCE_MATRIX = {
+            0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0,
+            0.299f, 0.587f, 0.114f, 0, 0};
 
+    private final Context context;
+    private final BlurBitmapPool bitmapPool;
+    private BlurEngine blurEngine;
+
+    private float bitmapScale = DEFAULT_BITMAP_SCALE;
+    private boolean downscaleCapture = true;
+    private boolean lowPrecision;
+    private boolean tracing;
+    private int viewWidth, viewHeight;
+
+    private Bitmap screenshotBitmap;
+    private Canvas screenshotCanvas;
+    // Written by capture(), swapped with the blur input when a blur takes over a new capture
+    private Bitmap inputBitmap;
+    private Canvas inputCanvas;
+    private boolean captureFresh;
+
+    // Only used by the running blur, which holds blurLock
+    private final Object blurLock = new Object();
+    private boolean blurring;
+    private Bitmap blurInputBitmap;
+    private Canvas blurInputCanvas;
+    private Bitmap outputBitmap;
+    private final Canvas outputCanvas = new Canvas();
+
+    private final Matrix scaleMatrix;
+    private final Paint scalePaint;
+    private Paint luminancePaint;
+
+    // Region of interest in view coordinates, an empty rect means the whole view or nothing covered
+    private boolean regionOfInterest;
+    private final Rect visibleRegion = new Rect();
+    private final Rect coveredRegion = new Rect();
+    private int regionFillColor = DEFAULT_REGION_FILL_COLOR;
+
+    // Tiles of the last capture in scaled coordinates, and the same tiles padded for the blur
+    private boolean tiledCapture;
+    private int tileCount;
+    private final Rect[] tiles = new Rect[MAX_TILES];
+    private final Rect[] paddedTiles = new Rect[MAX_TILES];
+    // The tiles of the capture being blurred, and their buffers
+    private boolean blurTiled;
+    private int blurTileCount;
+    private int blurFillColor;
+    private final Rect[] blurTileRects = new Rect[MAX_TILES];
+    private final Rect[] blurPaddedTileRects = new Rect[MAX_TILES];
+    private final Bitmap[] tileInputs = new Bitmap[MAX_TILES];
+    private final Canvas[] tileCanvases = new Canvas[MAX_TILES];
+    private final Bitmap[] tileOutputs = new Bitmap[MAX_TILES];
+    private boolean releaseTilesAfterBlur;
+    private final Paint copyPaint;
+    private final Rect scaledVisible = new Rect();
+    private final Rect scaledCovered = new Rect();
+    // The part of the covered region none of the padded tiles reach, left out of the capture
+    private final Rect clipCovered = new Rect();
+    private final Rect srcRect = new Rect();
+    private final Rect dstRect = new Rect();
+
+    public BlurBuilder(@NonNull Context context) {
+        this(context, BlurBitmapPool.getInstance());
+    }
+
+    public BlurBuilder(@NonNull Context context, @NonNull BlurBitmapPool bitmapPool) {
+        this.context = context.getApplicationContext();
+        this.bitmapPool = bitmapPool;
+        this.scaleMatrix = new Matrix();
+        this.scalePaint = new Paint();
+        this.copyPaint = new Paint();
+        copyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        for (int i = 0; i < MAX_TILES; i++) {
+            tiles[i] = new Rect();
+            paddedTiles[i] = new Rect();
+            blurTileRects[i] = new Rect();
+            blurPaddedTileRects[i] = new Rect();
+        }
+    }
+
+    /**
+     * Take a screenshot of the view, then scale it down and blur it.
+     * This must be called on the UI thread.
+     *
+     * @param v the view to blur
+     * @return the blurred bitmap, this is reused by the next blur of the same size
+     */
+    public Bitmap blurView(@NonNull View v) {
+        capture(v);
+        return blurCapture();
+    }
+
+    /**
+     * Blur a view into a new bitmap, darkened as before dimming moved to the drawing side.
+     *
+     * @deprecated allocates everything per call, keep a {@link BlurBuilder} and use
+     * {@link #blurView(View)} or {@link #capture(View)} and {@link #blurCapture()} instead
+     */
+    @Deprecated
     public static Bitmap blur(View v) {
-        return blur(v.getContext(), getScreenshot(v));
+        BlurBuilder blurBuilder = new BlurBuilder(v.getContext());
+        try {
+            Bitmap blurred = blurBuilder.blurView(v);
+            return darkenBitmap(blurred.copy(blurred.getConfig(), true));
+        } finally {
+            blurBuilder.release();
+        }
     }
 
+    /**
+     * Scale a bitmap down and blur it into a new bitmap, darkened.
+     *
+     * @deprecated allocates everything per call, keep a {@link BlurBuilder} and use
+     * {@link #blurView(View)} or {@link #capture(View)} and {@link #blurCapture()} instead
+     */
+    @Deprecated
     public static Bitmap blur(Context ctx, Bitmap image) {
-        int width = Math.round(image.getWidth() * BITMAP_SCALE);
-        int height = Math.round(image.getHeight() * BITMAP_SCALE);
-
+        int width = Math.max(1, Math.round(image.getWidth() * DEFAULT_BITMAP_SCALE));
+        int height = Math.max(1, Math.round(image.getHeight() * DEFAULT_BITMAP_SCALE));
         Bitmap inputBitmap = Bitmap.createScaledBitmap(image, width, height, false);
-        Bitmap outputBitmap = Bitmap.createBitmap(inputBitmap);
-
-        RenderScript rs = RenderScript.create(ctx);
-        ScriptIntrinsicBlur theIntrinsic = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-        Allocation tmpIn = Allocation.createFromBitmap(rs, inputBitmap);
-        Allocation tmpOut = Allocation.createFromBitmap(rs, outputBitmap);
-        theIntrinsic.setRadius(BLUR_RADIUS);
-        theIntrinsic.setInput(tmpIn);
-        theIntrinsic.forEach(tmpOut);
-        tmpOut.copyTo(outputBitmap);
+        Bitmap outputBitmap = Bitmap.createBitmap(width, height, inputBitmap.getConfig());
 
+        BlurEngine blurEngine = createDefaultBlurEngine(ctx);
+        blurEngine.blur(inputBitmap, outputBitmap, BLUR_RADIUS);
+        blurEngine.release();
+        if (inputBitmap != image)
+            inputBitmap.recycle();
         return darkenBitmap(outputBitmap);
     }
 
-    private static Bitmap getScreenshot(View v) {
-        Bitmap b = Bitmap.createBitmap(v.getWidth(), v.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas c = new Canvas(b);
-        v.draw(c);
-        return b;
-    }
-
     private static Bitmap darkenBitmap(Bitmap bitmap) {
         Canvas canvas = new Canvas(bitmap);
-        Paint paint = new Paint(Color.BLACK);
-        ColorFilter filter = new LightingColorFilter(0xAAAAAA, 0x000000);
-        paint.setColorFilter(filter);
-        canvas.drawBitmap(bitmap, new Matrix(), paint);
+        Paint paint = new Paint();
+        paint.setColorFilter(new LightingColorFilter(0xAAAAAA, 0x000000));
+        canvas.drawBitmap(bitmap, 0, 0, paint);
         return bitmap;
     }
-}
\ No newline at end of file
+
+    /**
+     * Take a scaled down screenshot of the view, ready for {@link #blurCapture()}.
+     * This must be called on the UI thread.
+     *
+     * @param v the view to capture
+     */
+    public synchronized void capture(@NonNull View v) {
+        boolean tracing = this.tracing;
+        if (tracing)
+            PeekTrace.beginSection("BlurBuilder.capture");
+        try {
+            prepareBuffers(v.getWidth(), v.getHeight());
+            updateTiles();
+            boolean luminance = inputBitmap.getConfig() == Bitmap.Config.ALPHA_8;
+
+            if (downscaleCapture) {
+                // Draw the view straight into the scaled bitmap, no full size screenshot needed
+                inputBitmap.eraseColor(Color.TRANSPARENT);
+                int saveCount = luminance ? inputCanvas.saveLayer(null, luminancePaint, Canvas.ALL_SAVE_FLAG)
+                        : inputCanvas.save();
+                clipToTiles(inputCanvas);
+                inputCanvas.concat(scaleMatrix);
+                v.draw(inputCanvas);
+                inputCanvas.restoreToCount(saveCount);
+            } else {
+                screenshotBitmap.eraseColor(Color.TRANSPARENT);
+                v.draw(screenshotCanvas);
+                if (tracing)
+                    PeekTrace.beginSection("BlurBuilder.scale");
+                if (luminance)
+                    inputBitmap.eraseColor(Color.TRANSPARENT);
+                int saveCount = inputCanvas.save();
+                clipToTiles(inputCanvas);
+                inputCanvas.drawBitmap(screenshotBitmap, scaleMatrix, luminance ? luminancePaint : scalePaint);
+                inputCanvas.restoreToCount(saveCount);
+                if (tracing)
+                    PeekTrace.endSection();
+            }
+            captureFresh = true;
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
+        }
+    }
+
+    /**
+     * Blur the last capture. This can be called from any thread, blurs are run one at a time.
+     * <p/>
+     * The bitmap isn't darkened, apply a color filter when drawing it instead.
+     *
+     * @return the blurred bitmap, this is reused by the next blur of the same size. Null if
+     * nothing has been captured, or if the buffers were released while blurring.
+     */
+    @Nullable
+    public Bitmap blurCapture() {
+        synchronized (blurLock) {
+            Bitmap input;
+            Bitmap output;
+            BlurEngine engine;
+            boolean tracing;
+            synchronized (this) {
+                if (inputBitmap == null)
+                    return null;
+                if (captureFresh)
+                    swapCapture();
+                if (blurEngine == null)
+                    blurEngine = createDefaultBlurEngine(context);
+                input = blurInputBitmap;
+                output = outputBitmap;
+                engine = blurEngine;
+                tracing = this.tracing;
+                blurring = true;
+            }
+
+            boolean released;
+            if (tracing)
+                PeekTrace.beginSection("BlurBuilder.blur");
+            try {
+                if (blurTiled)
+                    blurTiles(engine, input, output);
+                else
+                    engine.blur(input, output, BLUR_RADIUS);
+            } finally {
+                if (tracing)
+                    PeekTrace.endSection();
+                synchronized (this) {
+                    released = finishBlur(input, output);
+                }
+            }
+            return released ? null : output;
+        }
+    }
+
+    /**
+     * Hand the latest capture over to the blur, the capture buffer becomes the old blur input.
+     */
+    private void swapCapture() {
+        Bitmap bitmap = inputBitmap;
+        Canvas canvas = inputCanvas;
+        inputBitmap = blurInputBitmap;
+        inputCanvas = blurInputCanvas;
+        blurInputBitmap = bitmap;
+        blurInputCanvas = canvas;
+        captureFresh = false;
+
+        blurTiled = tiledCapture;
+        blurTileCount = tileCount;
+        blurFillColor = regionFillColor;
+        for (int i = 0; i < tileCount; i++) {
+            blurTileRects[i].set(tiles[i]);
+            blurPaddedTileRects[i].set(paddedTiles[i]);
+        }
+    }
+
+    /**
+     * Return the blur's buffers to the pool if they were released while it was running.
+     *
+     * @return true if the buffers were released
+     */
+    private boolean finishBlur(Bitmap input, Bitmap output) {
+        blurring = false;
+        if (releaseTilesAfterBlur) {
+            releaseTilesAfterBlur = false;
+            for (int i = 0; i < MAX_TILES; i++) {
+                releaseTileBuffers(i);
+            }
+        }
+        boolean released = false;
+        if (blurInputBitmap != input) {
+            bitmapPool.put(input);
+            released = true;
+        }
+        if (outputBitmap != output) {
+            bitmapPool.put(output);
+            released = true;
+        }
+        return released;
+    }
+
+    /**
+     * Split the visible part of the scaled capture around the covered part into up to four tiles:
+     * above, below, left and right of it.
+     */
+    private void updateTiles() {
+        tiledCapture = regionOfInterest;
+        tileCount = 0;
+        clipCovered.setEmpty();
+        if (!regionOfInterest)
+            return;
+
+        int width = inputBitmap.getWidth();
+        int height = inputBitmap.getHeight();
+        float scaleX = (float) width / Math.max(1, viewWidth);
+        float scaleY = (float) height / Math.max(1, viewHeight);
+
+        // The visible part is rounded outwards and the covered part inwards, so no visible pixel is skipped
+        if (visibleRegion.isEmpty())
+            scaledVisible.set(0, 0, width, height);
+        else
+            scaledVisible.set((int) Math.floor(visibleRegion.left * scaleX), (int) Math.floor(visibleRegion.top * scaleY),
+                    (int) Math.ceil(visibleRegion.right * scaleX), (int) Math.ceil(visibleRegion.bottom * scaleY));
+        if (!scaledVisible.intersect(0, 0, width, height))
+            return;
+
+        scaledCovered.set((int) Math.ceil(coveredRegion.left * scaleX), (int) Math.ceil(coveredRegion.top * scaleY),
+                (int) Math.floor(coveredRegion.right * scaleX), (int) Math.floor(coveredRegion.bottom * scaleY));
+        if (coveredRegion.isEmpty() || scaledCovered.isEmpty() || !scaledCovered.intersect(scaledVisible)) {
+            addTile(scaledVisible.left, scaledVisible.top, scaledVisible.right, scaledVisible.bottom);
+            return;
+        }
+
+        clipCovered.set(scaledCovered);
+        clipCovered.inset(TILE_PADDING, TILE_PADDING);
+        addTile(scaledVisible.left, scaledVisible.top, scaledVisible.right, scaledCovered.top);
+        addTile(scaledVisible.left, scaledCovered.bottom, scaledVisible.right, scaledVisible.bottom);
+        addTile(scaledVisible.left, scaledCovered.top, scaledCovered.left, scaledCovered.bottom);
+        addTile(scaledCovered.right, scaledCovered.top, scaledVisible.right, scaledCovered.bottom);
+    }
+
+    private void addTile(int left, int top, int right, int bottom) {
+        if (left >= right || top >= bottom)
+            return;
+        tiles[tileCount].set(left, top, right, bottom);
+        paddedTiles[tileCount].set(left - TILE_PADDING, top - TILE_PADDING, right + TILE_PADDING, bottom + TILE_PADDING);
+        paddedTiles[tileCount].intersect(scaledVisible);
+        tileCount++;
+    }
+
+    /**
+     * Clip the canvas to the padded tiles of a region of interest capture, in scaled coordinates.
+     * <p/>
+     * Apps targeting API 28 and above may only clip with INTERSECT and DIFFERENCE, so the canvas is
+     * clipped to the visible part minus the inner part of the covered region. This covers every
+     * padded tile, at most a few pixels along the edges of the covered region are captured extra.
+     */
+    private void clipToTiles(Canvas canvas) {
+        if (!tiledCapture)
+            return;
+        if (tileCount == 0) {
+            canvas.clipRect(0, 0, 0, 0);
+            return;
+        }
+        canvas.clipRect(scaledVisible);
+        if (!clipCovered.isEmpty())
+            canvas.clipRect(clipCovered, Region.Op.DIFFERENCE);
+    }
+
+    /**
+     * Blur each tile separately and copy them into the output, which is filled with the region
+     * fill color everywhere else.
+     */
+    private void blurTiles(BlurEngine engine, Bitmap input, Bitmap output) {
+        Bitmap.Config config = output.getConfig();
+        if (config == Bitmap.Config.ALPHA_8) {
+            int luminance = Math.round(Color.red(blurFillColor) * 0.299f + Color.green(blurFillColor) * 0.587f
+                    + Color.blue(blurFillColor) * 0.114f);
+            output.eraseColor(Color.argb(luminance, 0, 0, 0));
+        } else {
+            output.eraseColor(blurFillColor);
+        }
+        outputCanvas.setBitmap(output);
+
+        for (int i = 0; i < blurTileCount; i++) {
+            Rect tile = blurTileRects[i];
+            Rect paddedTile = blurPaddedTileRects[i];
+            int width = paddedTile.width();
+            int height = paddedTile.height();
+            prepareTileBuffers(i, width, height, config);
+
+            dstRect.set(0, 0, width, height);
+            tileCanvases[i].drawBitmap(input, paddedTile, dstRect, copyPaint);
+            engine.blur(tileInputs[i], tileOutputs[i], BLUR_RADIUS);
+
+            srcRect.set(tile);
+            srcRect.offset(-paddedTile.left, -paddedTile.top);
+            outputCanvas.drawBitmap(tileOutputs[i], srcRect, tile, copyPaint);
+        }
+        outputCanvas.setBitmap(null);
+    }
+
+    private void prepareTileBuffers(int tile, int width, int height, Bitmap.Config config) {
+        Bitmap input = tileInputs[tile];
+        if (input != null && input.getWidth() == width && input.getHeight() == height && input.getConfig() == config)
+            return;
+
+        releaseTileBuffers(tile);
+        tileInputs[tile] = bitmapPool.get(width, height, config);
+        tileCanvases[tile] = new Canvas(tileInputs[tile]);
+        tileOutputs[tile] = bitmapPool.get(width, height, config);
+    }
+
+    private void releaseTileBuffers(int tile) {
+        bitmapPool.put(tileInputs[tile]);
+        bitmapPool.put(tileOutputs[tile]);
+        tileInputs[tile] = null;
+        tileCanvases[tile] = null;
+        tileOutputs[tile] = null;
+    }
+
+    /**
+     * The RenderScript engine on API 17 and above, otherwise the pure Java stack blur engine.
+     */
+    public static BlurEngine createDefaultBlurEngine(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT >= 17)
+            return new RenderScriptBlurEngine(context);
+        else
+            return new StackBlurEngine();
+    }
+
+    /**
+     * Create the buffers if they don't exist yet, or recreate them if the size of the view
+     * has changed since the last blur.
+     */
+    private void prepareBuffers(int width, int height) {
+        if (blurEngine == null)
+            blurEngine = createDefaultBlurEngine(context);
+        Bitmap.Config config = getBufferConfig();
+        if (inputBitmap != null && viewWidth == width && viewHeight == height
+                && downscaleCapture == (screenshotBitmap == null) && inputBitmap.getConfig() == config)
+            return;
+
+        releaseBuffers();
+        viewWidth = width;
+        viewHeight = height;
+
+        int scaledWidth = Math.max(1, Math.round(width * bitmapScale));
+        int scaledHeight = Math.max(1, Math.round(height * bitmapScale));
+
+        if (!downscaleCapture) {
+            // A luminance capture needs the colours of the screenshot
+            Bitmap.Config screenshotConfig = config == Bitmap.Config.ALPHA_8 ? Bitmap.Config.ARGB_8888 : config;
+            screenshotBitmap = bitmapPool.get(Math.max(1, width), Math.max(1, height), screenshotConfig);
+            screenshotCanvas = new Canvas(screenshotBitmap);
+        }
+        inputBitmap = bitmapPool.get(scaledWidth, scaledHeight, config);
+        inputCanvas = new Canvas(inputBitmap);
+        blurInputBitmap = bitmapPool.get(scaledWidth, scaledHeight, config);
+        blurInputCanvas = new Canvas(blurInputBitmap);
+        outputBitmap = bitmapPool.get(scaledWidth, scaledHeight, config);
+
+        if (config == Bitmap.Config.ALPHA_8 && luminancePaint == null) {
+            luminancePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            luminancePaint.setColorFilter(new ColorMatrixColorFilter(new ColorMatrix(LUMINANCE_MATRIX)));
+        }
+
+        scaleMatrix.setScale((float) scaledWidth / Math.max(1, width), (float) scaledHeight / Math.max(1, height));
+    }
+
+    /**
+     * ARGB_8888, or in low precision mode a single channel luminance buffer for the RenderScript
+     * engine (its blur intrinsic only supports U8 and U8_4 elements) and RGB_565 for any other engine.
+     */
+    private Bitmap.Config getBufferConfig() {
+        if (!lowPrecision)
+            return Bitmap.Config.ARGB_8888;
+        return blurEngine instanceof RenderScriptBlurEngine ? Bitmap.Config.ALPHA_8 : Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * Set the engine used to blur the captured view, the previous engine is released once any
+     * running blur has finished.
+     *
+     * @param blurEngine the engine to use, or null for the default engine
+     */
+    public void setBlurEngine(@Nullable BlurEngine blurEngine) {
+        synchronized (blurLock) {
+            synchronized (this) {
+                if (this.blurEngine != null && this.blurEngine != blurEngine)
+                    this.blurEngine.release();
+                this.blurEngine = blurEngine;
+            }
+        }
+    }
+
+    public BlurBitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public BlurEngine getBlurEngine() {
+        return blurEngine;
+    }
+
+    /**
+     * Set the scale the view is captured and blurred at, smaller values are faster but blurrier.
+     *
+     * @param bitmapScale scale between 0 and 1, defaults to {@link #DEFAULT_BITMAP_SCALE}
+     */
+    public synchronized void setBitmapScale(float bitmapScale) {
+        if (bitmapScale <= 0 || bitmapScale > 1)
+            throw new IllegalArgumentException("Blur scale must be greater than 0 and at most 1.");
+        if (this.bitmapScale != bitmapScale) {
+            this.bitmapScale = bitmapScale;
+            releaseBuffers();
+        }
+    }
+
+    public float getBitmapScale() {
+        return bitmapScale;
+    }
+
+    /**
+     * If true (the default), the view is drawn straight into a downscaled bitmap. Otherwise it is
+     * drawn into a full size screenshot which is then scaled down.
+     */
+    public synchronized void setDownscaleCapture(boolean downscaleCapture) {
+        this.downscaleCapture = downscaleCapture;
+    }
+
+    public boolean isDownscaleCapture() {
+        return downscaleCapture;
+    }
+
+    /**
+     * Add trace sections around capturing and blurring, see {@link PeekTrace}.
+     */
+    public synchronized void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * If true, the view is captured and blurred without an alpha channel at reduced precision:
+     * as RGB_565, or as a single channel luminance (ALPHA_8) bitmap with the RenderScript engine.
+     * A luminance blur has to be drawn tinted, see {@link BackgroundBlurHelper}. Defaults to false.
+     */
+    public synchronized void setLowPrecision(boolean lowPrecision) {
+        if (this.lowPrecision != lowPrecision) {
+            this.lowPrecision = lowPrecision;
+            releaseBuffers();
+        }
+    }
+
+    public boolean isLowPrecision() {
+        return lowPrecision;
+    }
+
+    /**
+     * Only capture and blur the visible parts of the view which aren't covered, e.g. by an opaque
+     * peek view. The rest of the blurred bitmap is filled with the region fill color. Takes effect
+     * from the next capture.
+     *
+     * @param visible the visible part of the view in view coordinates, or null for the whole view
+     * @param covered the covered part of the view in view coordinates, or null if nothing is covered
+     * @return true if the region of interest has changed
+     */
+    public synchronized boolean setRegionOfInterest(@Nullable Rect visible, @Nullable Rect covered) {
+        boolean changed = !regionOfInterest
+                || !(visible == null ? visibleRegion.isEmpty() : visibleRegion.equals(visible))
+                || !(covered == null ? coveredRegion.isEmpty() : coveredRegion.equals(covered));
+        regionOfInterest = true;
+        if (visible == null)
+            visibleRegion.setEmpty();
+        else
+            visibleRegion.set(visible);
+        if (covered == null)
+            coveredRegion.setEmpty();
+        else
+            coveredRegion.set(covered);
+        return changed;
+    }
+
+    /**
+     * Capture and blur the whole view again.
+     */
+    public synchronized void clearRegionOfInterest() {
+        regionOfInterest = false;
+    }
+
+    public boolean hasRegionOfInterest() {
+        return regionOfInterest;
+    }
+
+    /**
+     * Set the color the parts of the blur outside the region of interest are filled with.
+     */
+    public synchronized void setRegionFillColor(@ColorInt int regionFillColor) {
+        this.regionFillColor = regionFillColor;
+    }
+
+    public int getRegionFillColor() {
+        return regionFillColor;
+    }
+
+    /**
+     * @return true if there is a capture which can be blurred with {@link #blurCapture()}
+     */
+    public synchronized boolean hasCapture() {
+        return inputBitmap != null;
+    }
+
+    /**
+     * Release the capture and blur buffers but keep the blur engine, the next blur will
+     * borrow them again. Any bitmap returned by an earlier blur goes back to the pool and must no
+     * longer be drawn. The buffers of a running blur go back to the pool once it has finished.
+     */
+    public synchronized void releaseBuffers() {
+        if (screenshotBitmap != null) {
+            bitmapPool.put(screenshotBitmap);
+            screenshotBitmap = null;
+            screenshotCanvas = null;
+        }
+        if (inputBitmap != null) {
+            bitmapPool.put(inputBitmap);
+            inputBitmap = null;
+            inputCanvas = null;
+        }
+        if (blurring) {
+            releaseTilesAfterBlur = true;
+        } else {
+            bitmapPool.put(blurInputBitmap);
+            bitmapPool.put(outputBitmap);
+            for (int i = 0; i < MAX_TILES; i++) {
+                releaseTileBuffers(i);
+            }
+        }
+        blurInputBitmap = null;
+        blurInputCanvas = null;
+        outputBitmap = null;
+        captureFresh = false;
+        tiledCapture = false;
+        tileCount = 0;
+        viewWidth = 0;
+        viewHeight = 0;
+    }
+
+    /**
+     * Release the buffers and the blur engine's resources, the next blur will recreate them.
+     * Waits for any running blur to finish first.
+     */
+    public void release() {
+        synchronized (blurLock) {
+            synchronized (this) {
+                releaseBuffers();
+                if (blurEngine != null)
+                    blurEngine.release();
+            }
+        }
+    }
+}
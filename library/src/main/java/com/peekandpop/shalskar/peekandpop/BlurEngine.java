@@ -0,0 +1,26 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+/**
+ * Blurs bitmaps for {@link BlurBuilder}.
+ * <p/>
+ * Implementations may keep buffers between blurs, these should be freed in {@link #release()}.
+ */
+public interface BlurEngine {
+
+    /**
+     * Blur the input bitmap into the output bitmap, both bitmaps are the same size.
+     *
+     * @param input  bitmap to blur
+     * @param output bitmap to write the blurred result to
+     * @param radius blur radius in pixels
+     */
+    void blur(@NonNull Bitmap input, @NonNull Bitmap output, float radius);
+
+    /**
+     * Free any resources kept between blurs, the engine can still be used afterwards.
+     */
+    void release();
+}
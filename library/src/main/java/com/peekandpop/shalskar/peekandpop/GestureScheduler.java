@@ -0,0 +1,117 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Schedules the delayed gesture callbacks (long click, long hold and hold and release) for a
+ * PeekAndPop instance.
+ * <p/>
+ * Everything runs on the main looper, so no threads are created per gesture and callbacks do
+ * not need to be handed back to the UI thread. Callbacks are wrapped in reusable {@link Token}s
+ * which can be scheduled and cancelled any number of times.
+ */
+public class GestureScheduler {
+
+    private final Handler handler;
+    private final boolean tracing;
+    // Only the tokens that are scheduled, so tokens of discarded listeners aren't kept alive
+    private final ArrayList<Token> pendingTokens;
+
+    public GestureScheduler() {
+        this(false);
+    }
+
+    /**
+     * @param tracing whether tokens run in trace sections, see {@link PeekTrace}
+     */
+    public GestureScheduler(boolean tracing) {
+        this.tracing = tracing;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.pendingTokens = new ArrayList<>();
+    }
+
+    /**
+     * Cancel every pending token scheduled by this scheduler.
+     */
+    public void cancelAll() {
+        handler.removeCallbacksAndMessages(null);
+        for (int i = 0; i < pendingTokens.size(); i++) {
+            pendingTokens.get(i).pending = false;
+        }
+        pendingTokens.clear();
+    }
+
+    /**
+     * A reusable, cancellable callback that runs on the main looper.
+     */
+    public static abstract class Token implements Runnable {
+
+        private static final String DEFAULT_TRACE_NAME = "GestureScheduler.Token";
+
+        private final GestureScheduler scheduler;
+        private final String traceName;
+        private boolean pending;
+
+        public Token(@NonNull GestureScheduler scheduler) {
+            this(scheduler, DEFAULT_TRACE_NAME);
+        }
+
+        /**
+         * @param traceName name of the trace section the token runs in, see {@link PeekTrace}
+         */
+        public Token(@NonNull GestureScheduler scheduler, @NonNull String traceName) {
+            this.scheduler = scheduler;
+            this.traceName = traceName;
+        }
+
+        /**
+         * Schedule this token to run after the delay, replacing any pending run.
+         *
+         * @param delay delay in milliseconds
+         */
+        public void schedule(long delay) {
+            scheduler.handler.removeCallbacks(this);
+            if (!pending) {
+                pending = true;
+                scheduler.pendingTokens.add(this);
+            }
+            scheduler.handler.postDelayed(this, delay);
+        }
+
+        public void cancel() {
+            if (pending) {
+                scheduler.handler.removeCallbacks(this);
+                setNotPending();
+            }
+        }
+
+        private void setNotPending() {
+            pending = false;
+            scheduler.pendingTokens.remove(this);
+        }
+
+        public boolean isPending() {
+            return pending;
+        }
+
+        @Override
+        public final void run() {
+            setNotPending();
+            boolean tracing = scheduler.tracing;
+            if (tracing)
+                PeekTrace.beginSection(traceName);
+            try {
+                onRun();
+            } finally {
+                if (tracing)
+                    PeekTrace.endSection();
+            }
+        }
+
+        protected abstract void onRun();
+    }
+}
@@ -0,0 +1,178 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewParent;
+
+import java.util.ArrayList;
+
+/**
+ * Spatial index of the long hold or hold and release views within the peek view, used for hit
+ * testing touch events without allocating or walking the view tree.
+ * <p/>
+ * The bounds of each view are cached relative to the peek view whenever it lays out, and bucketed
+ * into a small grid over the peek view. A query only tests the views in the grid cell under the
+ * touch point.
+ */
+class HoldViewIndex {
+
+    private static final int GRID_SIZE = 4;
+
+    private int count;
+    private int[] lefts = new int[0];
+    private int[] tops = new int[0];
+    private int[] rights = new int[0];
+    private int[] bottoms = new int[0];
+
+    private int width, height;
+    private final int[] cellStarts = new int[GRID_SIZE * GRID_SIZE + 1];
+    private final int[] cellFill = new int[GRID_SIZE * GRID_SIZE];
+    private int[] cellEntries = new int[0];
+
+    // A view is hit if its stamp matches the stamp of the latest query
+    private int[] hitStamps = new int[0];
+    private int queryStamp;
+
+    /**
+     * Recalculate the bounds of the views relative to the peek view and rebuild the grid.
+     *
+     * @param peekView the peek view the views are within
+     * @param views    the views to index, a view's index is its position in this list
+     */
+    void update(@NonNull View peekView, @NonNull ArrayList<View> views) {
+        count = views.size();
+        if (lefts.length < count) {
+            lefts = new int[count];
+            tops = new int[count];
+            rights = new int[count];
+            bottoms = new int[count];
+            hitStamps = new int[count];
+        }
+        width = peekView.getWidth();
+        height = peekView.getHeight();
+
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            if (calculateBounds(peekView, views.get(i), i))
+                entries += (cellX(rights[i]) - cellX(lefts[i]) + 1) * (cellY(bottoms[i]) - cellY(tops[i]) + 1);
+            hitStamps[i] = 0;
+        }
+        queryStamp = 0;
+
+        // Count the views in each cell, then fill the cells
+        if (cellEntries.length < entries)
+            cellEntries = new int[entries];
+        for (int i = 0; i < cellStarts.length; i++) {
+            cellStarts[i] = 0;
+        }
+        for (int i = 0; i < cellFill.length; i++) {
+            cellFill[i] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            if (isEmpty(i))
+                continue;
+            for (int y = cellY(tops[i]); y <= cellY(bottoms[i]); y++) {
+                for (int x = cellX(lefts[i]); x <= cellX(rights[i]); x++) {
+                    cellStarts[y * GRID_SIZE + x + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < cellStarts.length; i++) {
+            cellStarts[i] += cellStarts[i - 1];
+        }
+        for (int i = 0; i < count; i++) {
+            if (isEmpty(i))
+                continue;
+            for (int y = cellY(tops[i]); y <= cellY(bottoms[i]); y++) {
+                for (int x = cellX(lefts[i]); x <= cellX(rights[i]); x++) {
+                    int cell = y * GRID_SIZE + x;
+                    cellEntries[cellStarts[cell] + cellFill[cell]] = i;
+                    cellFill[cell]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the views under the point, check each view with {@link #isHit(int)} afterwards.
+     *
+     * @param x x position relative to the peek view
+     * @param y y position relative to the peek view
+     */
+    void query(float x, float y) {
+        queryStamp++;
+        if (queryStamp == 0) {
+            for (int i = 0; i < count; i++) {
+                hitStamps[i] = 0;
+            }
+            queryStamp = 1;
+        }
+
+        if (x < 0 || y < 0 || x > width || y > height)
+            return;
+
+        int cell = cellY((int) y) * GRID_SIZE + cellX((int) x);
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            int index = cellEntries[i];
+            if (x >= lefts[index] && x <= rights[index] && y >= tops[index] && y <= bottoms[index])
+                hitStamps[index] = queryStamp;
+        }
+    }
+
+    /**
+     * @return true if the view at the index was under the point of the latest query
+     */
+    boolean isHit(int index) {
+        return index < count && queryStamp != 0 && hitStamps[index] == queryStamp;
+    }
+
+    /**
+     * Calculate the view's bounds relative to the peek view.
+     *
+     * @return false if the view isn't within the peek view or has no size
+     */
+    private boolean calculateBounds(@NonNull View peekView, View view, int index) {
+        lefts[index] = 0;
+        tops[index] = 0;
+        rights[index] = -1;
+        bottoms[index] = -1;
+        if (view == null || view.getWidth() == 0 || view.getHeight() == 0)
+            return false;
+
+        float left = 0;
+        float top = 0;
+        View current = view;
+        while (current != peekView) {
+            left += current.getX();
+            top += current.getY();
+            ViewParent parent = current.getParent();
+            if (!(parent instanceof View))
+                return false;
+            current = (View) parent;
+            left -= current.getScrollX();
+            top -= current.getScrollY();
+        }
+        lefts[index] = Math.max(0, Math.round(left));
+        tops[index] = Math.max(0, Math.round(top));
+        rights[index] = Math.min(width, Math.round(left) + view.getWidth());
+        bottoms[index] = Math.min(height, Math.round(top) + view.getHeight());
+        if (rights[index] < lefts[index] || bottoms[index] < tops[index]) {
+            rights[index] = -1;
+            bottoms[index] = -1;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isEmpty(int index) {
+        return rights[index] < 0;
+    }
+
+    private int cellX(int x) {
+        return width <= 0 ? 0 : Math.max(0, Math.min(GRID_SIZE - 1, x * GRID_SIZE / width));
+    }
+
+    private int cellY(int y) {
+        return height <= 0 ? 0 : Math.max(0, Math.min(GRID_SIZE - 1, y * GRID_SIZE / height));
+    }
+}
@@ -1,24 +1,30 @@
 package com.peekandpop.shalskar.peekandpop;
 
 import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.res.Configuration;
-import android.graphics.drawable.BitmapDrawable;
+import android.graphics.Color;
+import android.graphics.Rect;
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.Bundle;
 import android.os.SystemClock;
+import android.support.annotation.ColorInt;
 import android.support.annotation.IdRes;
 import android.support.annotation.IntDef;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
@@ -27,8 +33,6 @@ import com.peekandpop.shalskar.peekandpop.model.HoldAndReleaseView;
 import com.peekandpop.shalskar.peekandpop.model.LongHoldView;
 
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class PeekAndPop {
 
@@ -39,6 +43,26 @@ public class PeekAndPop {
     public static final int FLING_UPWARDS = 0;
     public static final int FLING_DOWNWARDS = 1;
 
+    @IntDef({STATE_IDLE, STATE_PEEKING, STATE_PEEKED, STATE_POPPING, STATE_FLUNG})
+    public @interface PeekStates {
+    }
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_PEEKING = 1;
+    public static final int STATE_PEEKED = 2;
+    public static final int STATE_POPPING = 3;
+    public static final int STATE_FLUNG = 4;
+
+    @IntDef({INFLATE_IMMEDIATELY, INFLATE_ON_FIRST_USE, INFLATE_WHEN_IDLE})
+    public @interface InflationModes {
+    }
+
+    public static final int INFLATE_IMMEDIATELY = 0;
+    public static final int INFLATE_ON_FIRST_USE = 1;
+    public static final int INFLATE_WHEN_IDLE = 2;
+
+    public static final int DEFAULT_PEEK_VIEW_TYPE = 0;
+
     private static final int PEEK_VIEW_MARGIN = 12;
 
     protected static final long LONG_CLICK_DURATION = 200;
@@ -56,17 +80,37 @@ public class PeekAndPop {
     protected ViewGroup contentView;
     protected ViewGroup peekLayout;
     protected PeekAnimationHelper peekAnimationHelper;
+    protected BackgroundBlurHelper backgroundBlurHelper;
+    protected PeekViewPool peekViewPool;
+    protected PeekViewTypeResolver peekViewTypeResolver;
+    protected ComponentCallbacks2 componentCallbacks;
+    protected Application.ActivityLifecycleCallbacks activityLifecycleCallbacks;
+    protected PeekViewInflater peekViewInflater;
+    protected PeekContentLoader<?> peekContentLoader;
+    protected PeekMetricsRecorder peekMetricsRecorder;
+    private int peekViewType;
+    private final Rect blurVisibleRegion = new Rect();
+    private final Rect blurCoveredRegion = new Rect();
 
     private boolean blurBackground;
+    private boolean asyncBlur;
+    private boolean processHistoricalTouches;
+    private boolean tracing;
     private boolean animateFling;
     private boolean allowUpwardsFling;
     private boolean allowDownwardsFling;
     private int customLongHoldDuration = -1;
     private boolean enabled = true;
+    private int state = STATE_IDLE;
 
     protected ArrayList<LongHoldView> longHoldViews;
     protected ArrayList<HoldAndReleaseView> holdAndReleaseViews;
     protected HoldAndReleaseView currentHoldAndReleaseView;
+    protected HoldViewIndex longHoldViewIndex;
+    protected HoldViewIndex holdAndReleaseViewIndex;
+    private boolean holdViewIndexesDirty = true;
+    private final ArrayList<View> indexedViews = new ArrayList<>();
+    private final int[] peekLayoutLocation = new int[2];
     protected OnFlingToActionListener onFlingToActionListener;
 
     protected OnGeneralActionListener onGeneralActionListener;
@@ -74,7 +118,9 @@ public class PeekAndPop {
     protected OnHoldAndReleaseListener onHoldAndReleaseListener;
     protected GestureListener gestureListener;
     protected GestureDetector gestureDetector;
-    private Timer longHoldTimer = new Timer();
+    protected GestureScheduler gestureScheduler;
+    protected RecyclerView recyclerView;
+    protected PeekAndPopItemTouchListener itemTouchListener;
 
     protected int orientation;
     protected float[] peekViewOriginalPosition;
@@ -93,14 +139,27 @@ public class PeekAndPop {
         this.onGeneralActionListener = builder.onGeneralActionListener;
         this.onLongHoldListener = builder.onLongHoldListener;
         this.onHoldAndReleaseListener = builder.onHoldAndReleaseListener;
+        this.peekViewTypeResolver = builder.peekViewTypeResolver;
+        if (builder.peekContentBinder != null)
+            this.peekContentLoader = new PeekContentLoader<>(builder.peekContentBinder);
+        if (builder.collectMetrics || builder.onPeekMetricsListener != null) {
+            float refreshRate = builder.activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+            this.peekMetricsRecorder = new PeekMetricsRecorder(refreshRate, builder.onPeekMetricsListener);
+        }
+        this.tracing = builder.tracing;
+        this.gestureScheduler = new GestureScheduler(tracing);
         this.gestureListener = new GestureListener();
         this.gestureDetector = new GestureDetector(builder.activity, this.gestureListener);
         initialiseGestureListeners();
 
         this.longHoldViews = new ArrayList<>();
         this.holdAndReleaseViews = new ArrayList<>();
+        this.longHoldViewIndex = new HoldViewIndex();
+        this.holdAndReleaseViewIndex = new HoldViewIndex();
 
         this.blurBackground = builder.blurBackground;
+        this.asyncBlur = builder.asyncBlur;
+        this.processHistoricalTouches = builder.processHistoricalTouches;
         this.animateFling = builder.animateFling;
         this.allowUpwardsFling = builder.allowUpwardsFling;
         this.allowDownwardsFling = builder.allowDownwardsFling;
@@ -108,7 +167,112 @@ public class PeekAndPop {
         this.orientation = builder.activity.getResources().getConfiguration().orientation;
         this.peekViewMargin = DimensionUtil.convertDpToPx(builder.activity.getApplicationContext(), PEEK_VIEW_MARGIN);
 
-        initialisePeekView();
+        this.peekViewPool = new PeekViewPool(builder.peekViewPoolSize);
+        for (int i = 0; i < builder.peekLayoutIds.size(); i++) {
+            peekViewPool.registerLayout(builder.peekLayoutIds.keyAt(i), builder.peekLayoutIds.valueAt(i));
+        }
+        initialiseComponentCallbacks();
+        initialiseActivityLifecycleCallbacks();
+
+        contentView = (ViewGroup) builder.activity.findViewById(android.R.id.content).getRootView();
+        if (builder.inflationMode == INFLATE_IMMEDIATELY) {
+            initialisePeekView();
+        } else if (builder.inflationMode == INFLATE_WHEN_IDLE) {
+            int peekLayoutId = builder.peekLayoutIds.get(peekViewPool.getFirstViewType());
+            peekViewInflater = new PeekViewInflater(builder.activity, contentView, peekLayoutId, new PeekViewInflater.Callback() {
+                @Override
+                public void onInflated(@Nullable ViewGroup inflatedPeekLayout, @Nullable View inflatedPeekView) {
+                    peekViewInflater = null;
+                    if (peekLayout == null)
+                        initialisePeekView(inflatedPeekLayout, inflatedPeekView);
+                }
+            });
+            peekViewInflater.inflateWhenIdle();
+        }
+    }
+
+    /**
+     * Inflate the peek view now if inflation was deferred and it hasn't been inflated yet.
+     */
+    protected void ensurePeekViewInitialised() {
+        if (peekLayout == null) {
+            if (peekViewInflater != null) {
+                peekViewInflater.cancel();
+                peekViewInflater = null;
+            }
+            initialisePeekView();
+        }
+    }
+
+    /**
+     * Evict the peek views and release the blur that aren't showing when memory is low.
+     */
+    private void initialiseComponentCallbacks() {
+        componentCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        };
+        builder.activity.getApplicationContext().registerComponentCallbacks(componentCallbacks);
+    }
+
+    /**
+     * Release the blur once the Activity is no longer visible, and destroy everything along with
+     * the Activity so nothing keeps it alive if {@link #destroy()} is never called.
+     */
+    private void initialiseActivityLifecycleCallbacks() {
+        activityLifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+                if (builder != null && activity == builder.activity)
+                    trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+                if (builder != null && activity == builder.activity)
+                    destroy();
+            }
+        };
+        builder.activity.getApplication().registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
+    }
+
+    private void trimMemory(int level) {
+        peekViewPool.onTrimMemory(level);
+        // The blur buffers go back to the shared bitmap pool before it is trimmed
+        if (backgroundBlurHelper != null)
+            backgroundBlurHelper.onTrimMemory(level);
+        BlurBitmapPool.getInstance().onTrimMemory(level);
     }
 
     /**
@@ -116,23 +280,32 @@ public class PeekAndPop {
      * bring it to the front and set the peekLayout to have an alpha of 0. Get the peekView's
      * original Y position for use when dragging.
      * <p/>
-     * If a flingToActionViewLayoutId is supplied, inflate the flingToActionViewLayoutId.
+     * Only the first registered peek layout is inflated here, the others are inflated the first
+     * time they are peeked.
      */
     protected void initialisePeekView() {
+        initialisePeekView(null, null);
+    }
+
+    /**
+     * Same as {@link #initialisePeekView()}, but using views that have already been inflated.
+     *
+     * @param inflatedPeekLayout the inflated peek background, or null to inflate it now
+     * @param inflatedPeekView   the inflated peek view of the first peek layout, or null to inflate it now
+     */
+    protected void initialisePeekView(@Nullable ViewGroup inflatedPeekLayout, @Nullable View inflatedPeekView) {
         LayoutInflater inflater = LayoutInflater.from(builder.activity);
-        contentView = (ViewGroup) builder.activity.findViewById(android.R.id.content).getRootView();
 
         // Center onPeek view in the onPeek layout and add to the container view group
-        peekLayout = (FrameLayout) inflater.inflate(R.layout.peek_background, contentView, false);
-        peekView = inflater.inflate(builder.peekLayoutId, peekLayout, false);
-        peekView.setId(R.id.peek_view);
-
-        FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) peekView.getLayoutParams();
-        layoutParams.gravity = Gravity.CENTER;
-        if (orientation == Configuration.ORIENTATION_LANDSCAPE)
-            layoutParams.topMargin = peekViewMargin;
-
-        peekLayout.addView(peekView, layoutParams);
+        if (inflatedPeekLayout != null)
+            peekLayout = inflatedPeekLayout;
+        else
+            peekLayout = (FrameLayout) inflater.inflate(R.layout.peek_background, contentView, false);
+        peekViewType = peekViewPool.getFirstViewType();
+        if (inflatedPeekView != null)
+            peekViewPool.put(peekViewType, inflatedPeekView);
+        peekView = obtainPeekView(inflater, peekViewType);
+        peekLayout.addView(peekView);
         contentView.addView(peekLayout);
 
         peekLayout.setVisibility(View.GONE);
@@ -140,10 +313,66 @@ public class PeekAndPop {
         peekLayout.requestLayout();
 
         peekAnimationHelper = new PeekAnimationHelper(builder.activity.getApplicationContext(), peekLayout, peekView);
+        peekAnimationHelper.setSpringAnimations(builder.springAnimations);
 
         bringViewsToFront();
         initialiseViewTreeObserver();
+        findHoldViews();
         resetViews();
+
+        // Create the blur helper now so it can start pre-blurring the background when idle
+        if (blurBackground && builder.cacheBlur && builder.preBlurWhenIdle)
+            getBackgroundBlurHelper();
+    }
+
+    /**
+     * Get the peek view for the view type from the pool, centred in the peek layout.
+     */
+    private View obtainPeekView(@NonNull LayoutInflater inflater, int viewType) {
+        View view = peekViewPool.obtain(inflater, peekLayout, viewType);
+        view.setId(R.id.peek_view);
+
+        FrameLayout.LayoutParams layoutParams = (FrameLayout.LayoutParams) view.getLayoutParams();
+        layoutParams.gravity = Gravity.CENTER;
+        if (orientation == Configuration.ORIENTATION_LANDSCAPE)
+            layoutParams.topMargin = peekViewMargin;
+        return view;
+    }
+
+    /**
+     * Swap the peek view for the one of the view type, finding the long hold and hold and release
+     * views again within the new peek view.
+     */
+    private void showPeekViewType(int viewType) {
+        if (viewType == peekViewType && peekView.getParent() == peekLayout)
+            return;
+
+        View view = obtainPeekView(LayoutInflater.from(builder.activity), viewType);
+        peekLayout.removeView(peekView);
+        peekLayout.addView(view);
+        peekViewType = viewType;
+        peekView = view;
+        peekAnimationHelper.setPeekView(peekView);
+        findHoldViews();
+
+        bringViewsToFront();
+        peekView.setScaleX(0.85f);
+        peekView.setScaleY(0.85f);
+    }
+
+    /**
+     * Find the long hold and hold and release views within the current peek view.
+     */
+    private void findHoldViews() {
+        for (int i = 0; i < longHoldViews.size(); i++) {
+            LongHoldView longHoldView = longHoldViews.get(i);
+            longHoldView.setView(peekView.findViewById(longHoldView.getViewId()));
+        }
+        for (int i = 0; i < holdAndReleaseViews.size(); i++) {
+            HoldAndReleaseView holdAndReleaseView = holdAndReleaseViews.get(i);
+            holdAndReleaseView.setView(peekView.findViewById(holdAndReleaseView.getViewId()));
+        }
+        holdViewIndexesDirty = true;
     }
 
     /**
@@ -165,14 +394,60 @@ public class PeekAndPop {
      * Once the onPeek view has inflated fully, this will also update if the view changes in size change
      */
     private void initialiseViewTreeObserver() {
-        peekView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+        peekLayout.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
             @Override
             public void onGlobalLayout() {
                 initialisePeekViewOriginalPosition();
+                holdViewIndexesDirty = true;
             }
         });
     }
 
+    /**
+     * Cache the bounds of the long hold and hold and release views, this is done after the peek
+     * view lays out so touch events don't need to look up the position of each view.
+     */
+    private void updateHoldViewIndexes() {
+        holdViewIndexesDirty = false;
+        peekLayout.getLocationOnScreen(peekLayoutLocation);
+
+        indexedViews.clear();
+        for (int i = 0; i < longHoldViews.size(); i++) {
+            indexedViews.add(longHoldViews.get(i).getView());
+        }
+        longHoldViewIndex.update(peekView, indexedViews);
+
+        indexedViews.clear();
+        for (int i = 0; i < holdAndReleaseViews.size(); i++) {
+            indexedViews.add(holdAndReleaseViews.get(i).getView());
+        }
+        holdAndReleaseViewIndex.update(peekView, indexedViews);
+        indexedViews.clear();
+    }
+
+    /**
+     * Find the hold views under the touch point, mapping the point into the peek view's
+     * coordinates using its current position and scale.
+     */
+    private void queryHoldViewIndexes(int rawX, int rawY) {
+        if (holdViewIndexesDirty)
+            updateHoldViewIndexes();
+
+        float x = rawX - peekLayoutLocation[0] - peekView.getX();
+        float y = rawY - peekLayoutLocation[1] - peekView.getY();
+        float scaleX = peekView.getScaleX();
+        float scaleY = peekView.getScaleY();
+        if (scaleX != 0 && scaleY != 0) {
+            x = peekView.getPivotX() + (x - peekView.getPivotX()) / scaleX;
+            y = peekView.getPivotY() + (y - peekView.getPivotY()) / scaleY;
+        }
+
+        if (onLongHoldListener != null)
+            longHoldViewIndex.query(x, y);
+        if (onHoldAndReleaseListener != null)
+            holdAndReleaseViewIndex.query(x, y);
+    }
+
     /**
      * Set an onClick and onTouch listener for each long click view.
      */
@@ -180,6 +455,8 @@ public class PeekAndPop {
         for (int i = 0; i < builder.longClickViews.size(); i++) {
             initialiseGestureListener(builder.longClickViews.get(i), -1);
         }
+        if (builder.recyclerView != null)
+            attachToRecyclerView(builder.recyclerView);
         gestureDetector.setIsLongpressEnabled(false);
     }
 
@@ -205,23 +482,60 @@ public class PeekAndPop {
      * If moved, check if the user has entered the bounds of the onPeek view.
      * If the user is within the bounds, and is at the edges of the view, then
      * move it appropriately.
+     * <p/>
+     * This is called for every move event while peeking, so the ACTION_MOVE path must not
+     * allocate (HandleTouchBenchmark checks this).
      */
     protected void handleTouch(@NonNull View view, @NonNull MotionEvent event, int position) {
-        if (event.getAction() == MotionEvent.ACTION_UP || event.getAction() == MotionEvent.ACTION_CANCEL) {
-            pop(view, position);
-        } else if (event.getAction() == MotionEvent.ACTION_MOVE) {
-            downX = (int) event.getRawX();
-            downY = (int) event.getRawY();
-
-            if (onLongHoldListener != null)
-                checkLongHoldViews(position);
+        if (builder == null)
+            return;
+
+        if (tracing)
+            PeekTrace.beginSection("PeekAndPop.handleTouch");
+        try {
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                pop(view, position);
+            } else if (action == MotionEvent.ACTION_MOVE) {
+                if (processHistoricalTouches) {
+                    // Historical samples only have view relative positions, offset them to screen positions
+                    float offsetX = event.getRawX() - event.getX();
+                    float offsetY = event.getRawY() - event.getY();
+                    int historySize = event.getHistorySize();
+                    for (int i = 0; i < historySize; i++) {
+                        handleMove((int) (event.getHistoricalX(i) + offsetX), (int) (event.getHistoricalY(i) + offsetY),
+                                event.getHistoricalEventTime(i), position);
+                    }
+                }
+                handleMove((int) event.getRawX(), (int) event.getRawY(), event.getEventTime(), position);
+            }
 
-            if (onHoldAndReleaseListener != null)
-                checkHoldAndReleaseViews(position);
+            if (gestureDetector != null)
+                gestureDetector.onTouchEvent(event);
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
         }
+    }
+
+    /**
+     * Handle a single touch sample, checking whether it has entered or left any of the hold views.
+     *
+     * @param sampleTime time of the sample, used to time the hold events from when the view was
+     *                   actually entered
+     */
+    private void handleMove(int rawX, int rawY, long sampleTime, int position) {
+        downX = rawX;
+        downY = rawY;
+
+        if (onLongHoldListener != null || onHoldAndReleaseListener != null)
+            queryHoldViewIndexes(downX, downY);
 
-        if (gestureDetector != null)
-            gestureDetector.onTouchEvent(event);
+        if (onLongHoldListener != null)
+            checkLongHoldViews(position, sampleTime);
+
+        if (onHoldAndReleaseListener != null)
+            checkHoldAndReleaseViews(position, sampleTime);
     }
 
     /**
@@ -230,18 +544,18 @@ public class PeekAndPop {
      *
      * @param position
      */
-    private void checkLongHoldViews(final int position) {
+    private void checkLongHoldViews(final int position, long sampleTime) {
         for (int i = 0; i < longHoldViews.size(); i++) {
             final LongHoldView longHoldView = longHoldViews.get(i);
-            boolean viewInBounds = DimensionUtil.pointInViewBounds(longHoldView.getView(), downX, downY);
+            boolean viewInBounds = longHoldViewIndex.isHit(i);
 
-            if (viewInBounds && longHoldView.getLongHoldTimer() == null) {
+            if (viewInBounds && !longHoldView.isLongHoldTimerStarted()) {
                 long duration = customLongHoldDuration != -1 ? customLongHoldDuration : LONG_HOLD_DURATION;
-                longHoldView.startLongHoldViewTimer(this, position, duration);
+                longHoldView.startLongHoldViewTimer(this, position, duration, sampleTime);
                 onLongHoldListener.onEnter(longHoldView.getView(), position);
-            } else if (!viewInBounds && longHoldView.getLongHoldTimer() != null) {
-                longHoldView.getLongHoldTimer().cancel();
-                longHoldView.setLongHoldTimer(null);
+            } else if (!viewInBounds && longHoldView.isLongHoldTimerStarted()) {
+                longHoldView.fireLongHoldTimerIfDue(sampleTime);
+                longHoldView.cancelLongHoldTimer();
             }
         }
     }
@@ -253,16 +567,16 @@ public class PeekAndPop {
      *
      * @param position
      */
-    private void checkHoldAndReleaseViews(final int position) {
+    private void checkHoldAndReleaseViews(final int position, long sampleTime) {
         for (int i = 0; i < holdAndReleaseViews.size(); i++) {
             final HoldAndReleaseView holdAndReleaseView = holdAndReleaseViews.get(i);
-            boolean viewInBounds = DimensionUtil.pointInViewBounds(holdAndReleaseView.getView(), downX, downY);
+            boolean viewInBounds = holdAndReleaseViewIndex.isHit(i);
 
-            if (viewInBounds && holdAndReleaseView.getHoldAndReleaseTimer() == null) {
-                holdAndReleaseView.startHoldAndReleaseTimer(this, position, HOLD_AND_RELEASE_DURATION);
-            } else if (!viewInBounds && holdAndReleaseView.getHoldAndReleaseTimer() != null) {
-                holdAndReleaseView.getHoldAndReleaseTimer().cancel();
-                holdAndReleaseView.setHoldAndReleaseTimer(null);
+            if (viewInBounds && !holdAndReleaseView.isHoldAndReleaseTimerStarted()) {
+                holdAndReleaseView.startHoldAndReleaseTimer(this, position, HOLD_AND_RELEASE_DURATION, sampleTime);
+            } else if (!viewInBounds && holdAndReleaseView.isHoldAndReleaseTimerStarted()) {
+                holdAndReleaseView.fireHoldAndReleaseTimerIfDue(sampleTime);
+                holdAndReleaseView.cancelHoldAndReleaseTimer();
                 if (holdAndReleaseView == currentHoldAndReleaseView) {
                     triggerOnLeaveEvent(holdAndReleaseView.getView(), holdAndReleaseView.getPosition());
                     holdAndReleaseView.setPosition(-1);
@@ -272,13 +586,25 @@ public class PeekAndPop {
         }
     }
 
-    public void sendOnLongHoldEvent(final View view, final int position) {
-        builder.activity.runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                onLongHoldListener.onLongHold(view, position);
-            }
-        });
+    /**
+     * Start preparing the peek content for a long click view that has just been touched down.
+     */
+    protected void preparePeekContent(@NonNull View longClickView, int position) {
+        if (peekContentLoader != null)
+            peekContentLoader.prepare(longClickView, position);
+    }
+
+    /**
+     * Drop any peek content that is being prepared, the touch didn't become a peek or has ended.
+     */
+    protected void cancelPeekContent() {
+        if (peekContentLoader != null)
+            peekContentLoader.cancel();
+    }
+
+    public void sendOnLongHoldEvent(@NonNull View view, int position) {
+        if (onLongHoldListener != null)
+            onLongHoldListener.onLongHold(view, position);
     }
 
     /**
@@ -297,29 +623,51 @@ public class PeekAndPop {
      * @param index         the view that long clicked
      */
     protected void peek(@NonNull View longClickView, int index) {
-        if (onGeneralActionListener != null)
-            onGeneralActionListener.onPeek(longClickView, index);
+        if (builder == null)
+            return;
 
-        peekLayout.setVisibility(View.VISIBLE);
+        if (tracing)
+            PeekTrace.beginSection("PeekAndPop.peek");
+        try {
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onPeek();
 
-        cancelClick(longClickView);
+            ensurePeekViewInitialised();
 
-        if (Build.VERSION.SDK_INT >= 17 && blurBackground)
-            blurBackground();
-        else if (Build.VERSION.SDK_INT < 17 && blurBackground)
-            Log.e("PeekAndPop", "Unable to blur background, device version below 17");
+            if (peekViewTypeResolver != null)
+                showPeekViewType(peekViewTypeResolver.getPeekViewType(longClickView, index));
 
-        peekAnimationHelper.animatePeek(ANIMATION_PEEK_DURATION);
+            if (peekContentLoader != null)
+                peekContentLoader.onPeek(peekView, longClickView, index);
 
-        if (builder.parentViewGroup != null)
-            builder.parentViewGroup.requestDisallowInterceptTouchEvent(true);
+            if (onGeneralActionListener != null)
+                onGeneralActionListener.onPeek(longClickView, index);
 
-        // Reset the touch coordinates to prevent accidental long hold actions on long hold views
-        downX = 0;
-        downY = 0;
+            peekLayout.setVisibility(View.VISIBLE);
 
-        gestureListener.setView(longClickView);
-        gestureListener.setPosition(index);
+            cancelClick(longClickView);
+
+            if (blurBackground)
+                blurBackground();
+
+            // A new peek can interrupt any state, it takes over from whatever is animating
+            peekAnimationHelper.cancelTransitions();
+            state = STATE_PEEKING;
+            peekAnimationHelper.animatePeek(ANIMATION_PEEK_DURATION, peekAnimatorListener);
+
+            if (builder.parentViewGroup != null)
+                builder.parentViewGroup.requestDisallowInterceptTouchEvent(true);
+
+            // Reset the touch coordinates to prevent accidental long hold actions on long hold views
+            downX = 0;
+            downY = 0;
+
+            gestureListener.setView(longClickView);
+            gestureListener.setPosition(index);
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
+        }
     }
 
     /**
@@ -337,14 +685,75 @@ public class PeekAndPop {
         e.recycle();
     }
 
+    /**
+     * Blur the content view and set it as the peekLayout background, either straight away or
+     * on a background thread if asyncBlur is enabled.
+     */
     private void blurBackground() {
-        if (Build.VERSION.SDK_INT >= 16) {
-            peekLayout.setBackground(null);
-            peekLayout.setBackground(new BitmapDrawable(builder.activity.getResources(), BlurBuilder.blur(contentView)));
-        }else {
-            peekLayout.setBackgroundDrawable(null);
-            peekLayout.setBackgroundDrawable(new BitmapDrawable(builder.activity.getResources(), BlurBuilder.blur(contentView)));
+        if (tracing)
+            PeekTrace.beginSection("PeekAndPop.blurBackground");
+        try {
+            long startTime = peekMetricsRecorder != null ? System.nanoTime() : 0;
+            if (builder.regionOfInterestBlur)
+                updateBlurRegion();
+            if (asyncBlur)
+                getBackgroundBlurHelper().blurBackgroundAsync();
+            else
+                getBackgroundBlurHelper().blurBackground();
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onBlur(startTime, System.nanoTime());
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
+        }
+    }
+
+    /**
+     * Limit the blur to the content frame, leaving out the system bars, and to around the peek view.
+     * The peek view's bounds are only known once it has been laid out, until then only the
+     * system bars are left out.
+     */
+    private void updateBlurRegion() {
+        View contentFrame = contentView.findViewById(android.R.id.content);
+        if (contentFrame != null) {
+            contentFrame.getDrawingRect(blurVisibleRegion);
+            contentView.offsetDescendantRectToMyCoords(contentFrame, blurVisibleRegion);
+        } else {
+            blurVisibleRegion.setEmpty();
+        }
+
+        // A peek layout laid out for a different window size has stale peek view bounds
+        boolean peekViewLaidOut = peekView.getWidth() > 0 && !peekView.isLayoutRequested()
+                && peekLayout.getWidth() == contentView.getWidth() && peekLayout.getHeight() == contentView.getHeight();
+        if (peekViewLaidOut) {
+            int left = peekLayout.getLeft() + Math.round(peekView.getX());
+            int top = peekLayout.getTop() + Math.round(peekView.getY());
+            blurCoveredRegion.set(left, top, left + peekView.getWidth(), top + peekView.getHeight());
+        } else {
+            blurCoveredRegion.setEmpty();
+        }
+
+        getBackgroundBlurHelper().setRegionOfInterest(blurVisibleRegion.isEmpty() ? null : blurVisibleRegion,
+                blurCoveredRegion.isEmpty() ? null : blurCoveredRegion);
+    }
+
+    protected BackgroundBlurHelper getBackgroundBlurHelper() {
+        if (backgroundBlurHelper == null) {
+            backgroundBlurHelper = new BackgroundBlurHelper(builder.activity.getApplicationContext(), peekLayout, contentView);
+            backgroundBlurHelper.setTracing(tracing);
+            backgroundBlurHelper.getBlurBuilder().setTracing(tracing);
+            backgroundBlurHelper.getBlurBuilder().setBitmapScale(builder.blurScale);
+            backgroundBlurHelper.getBlurBuilder().setDownscaleCapture(builder.downscaleBlurCapture);
+            backgroundBlurHelper.getBlurBuilder().setBlurEngine(builder.blurEngine);
+            backgroundBlurHelper.getBlurBuilder().setLowPrecision(builder.lowPrecisionBlur);
+            backgroundBlurHelper.setLuminanceTint(builder.luminanceBlurTint);
+            backgroundBlurHelper.getBlurBuilder().setRegionFillColor(builder.regionOfInterestFillColor);
+            backgroundBlurHelper.setDim(builder.blurDimAmount, builder.blurDimColor);
+            backgroundBlurHelper.setCacheEnabled(builder.cacheBlur);
+            backgroundBlurHelper.setPreBlurWhenIdle(builder.preBlurWhenIdle);
+            backgroundBlurHelper.setLiveBlur(builder.liveBlurFps);
         }
+        return backgroundBlurHelper;
     }
 
     /**
@@ -355,51 +764,79 @@ public class PeekAndPop {
      * @param index         the view that long clicked
      */
     protected void pop(@NonNull View longClickView, int index) {
-        if (onGeneralActionListener != null)
-            onGeneralActionListener.onPop(longClickView, index);
+        if (builder == null)
+            return;
 
-        if (currentHoldAndReleaseView != null && onHoldAndReleaseListener != null)
-            onHoldAndReleaseListener.onRelease(currentHoldAndReleaseView.getView(), currentHoldAndReleaseView.getPosition());
+        if (tracing)
+            PeekTrace.beginSection("PeekAndPop.pop");
+        try {
+            if (state != STATE_PEEKING && state != STATE_PEEKED)
+                return;
 
-        resetTimers();
+            if (onGeneralActionListener != null)
+                onGeneralActionListener.onPop(longClickView, index);
 
-        peekAnimationHelper.animatePop(new Animator.AnimatorListener() {
-            @Override
-            public void onAnimationStart(Animator animation) {
-            }
+            if (currentHoldAndReleaseView != null && onHoldAndReleaseListener != null)
+                onHoldAndReleaseListener.onRelease(currentHoldAndReleaseView.getView(), currentHoldAndReleaseView.getPosition());
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                resetViews();
-                animation.cancel();
-            }
+            resetTimers();
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-            }
+            if (backgroundBlurHelper != null)
+                backgroundBlurHelper.cancel();
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
-            }
-        }, ANIMATION_POP_DURATION);
+            cancelPeekContent();
 
-        popTime = System.currentTimeMillis();
+            peekAnimationHelper.cancelTransitions();
+            state = STATE_POPPING;
+            peekAnimationHelper.animatePop(popAnimatorListener, ANIMATION_POP_DURATION);
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onPop();
+
+            popTime = System.currentTimeMillis();
+        } finally {
+            if (tracing)
+                PeekTrace.endSection();
+        }
     }
 
+    private final Animator.AnimatorListener peekAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (state == STATE_PEEKING)
+                state = STATE_PEEKED;
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onPeekAnimationEnd();
+        }
+    };
+
+    /**
+     * Reset the views once the pop animation has finished, not called if it was cancelled.
+     */
+    private final Animator.AnimatorListener popAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            resetViews();
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onPopAnimationEnd();
+        }
+    };
+
     /**
      * Reset all views back to their initial values, this done after the onPeek has popped.
      */
     private void resetViews() {
+        // Stop any fling or expand still running before the views are snapped back
+        peekAnimationHelper.cancelAll();
+        state = STATE_IDLE;
         peekLayout.setVisibility(View.GONE);
         downX = 0;
         downY = 0;
 
+        if (backgroundBlurHelper != null)
+            backgroundBlurHelper.onPeekHidden();
+
         for (int i = 0; i < longHoldViews.size(); i++) {
-            Timer longHoldTimer = longHoldViews.get(i).getLongHoldTimer();
-            if (longHoldTimer != null) {
-                longHoldTimer.cancel();
-                longHoldViews.get(i).setLongHoldTimer(null);
-            }
+            longHoldViews.get(i).cancelLongHoldTimer();
         }
 
         if (peekViewOriginalPosition != null) {
@@ -412,30 +849,64 @@ public class PeekAndPop {
 
     private void resetTimers() {
         currentHoldAndReleaseView = null;
-        for (HoldAndReleaseView holdAndReleaseView : holdAndReleaseViews) {
-            if (holdAndReleaseView.getHoldAndReleaseTimer() != null)
-                holdAndReleaseView.getHoldAndReleaseTimer().cancel();
+        for (int i = 0; i < holdAndReleaseViews.size(); i++) {
+            holdAndReleaseViews.get(i).cancelHoldAndReleaseTimer();
         }
-        for (LongHoldView longHoldView : longHoldViews) {
-            if (longHoldView.getLongHoldTimer() != null)
-                longHoldView.getLongHoldTimer().cancel();
+        for (int i = 0; i < longHoldViews.size(); i++) {
+            longHoldViews.get(i).cancelLongHoldTimer();
         }
     }
 
+    /**
+     * Release everything held by PeekAndPop, called automatically when the Activity is destroyed.
+     * Calling it again has no effect.
+     * <p/>
+     * The touch listeners of the builder's long click views are removed, views added with
+     * {@link #addLongClickView(View, int)} keep theirs but ignore any further touches.
+     */
     public void destroy() {
-        if (currentHoldAndReleaseView != null && onHoldAndReleaseListener != null) {
-            currentHoldAndReleaseView.getHoldAndReleaseTimer().cancel();
-            currentHoldAndReleaseView = null;
+        if (builder == null)
+            return;
+
+        currentHoldAndReleaseView = null;
+        if (peekAnimationHelper != null)
+            peekAnimationHelper.cancelAll();
+        state = STATE_IDLE;
+        gestureScheduler.cancelAll();
+        detachFromRecyclerView();
+        for (int i = 0; i < builder.longClickViews.size(); i++) {
+            builder.longClickViews.get(i).setOnTouchListener(null);
         }
 
-        for (int i = 0; i < longHoldViews.size(); i++) {
-            Timer longHoldTimer = longHoldViews.get(i).getLongHoldTimer();
-            if (longHoldTimer != null) {
-                longHoldTimer.cancel();
-                longHoldViews.get(i).setLongHoldTimer(null);
-            }
+        if (peekViewInflater != null) {
+            peekViewInflater.cancel();
+            peekViewInflater = null;
+        }
+
+        if (peekContentLoader != null) {
+            peekContentLoader.release();
+            peekContentLoader = null;
+        }
+
+        if (peekMetricsRecorder != null)
+            peekMetricsRecorder.release();
+
+        if (componentCallbacks != null) {
+            builder.activity.getApplicationContext().unregisterComponentCallbacks(componentCallbacks);
+            componentCallbacks = null;
+        }
+
+        if (activityLifecycleCallbacks != null) {
+            builder.activity.getApplication().unregisterActivityLifecycleCallbacks(activityLifecycleCallbacks);
+            activityLifecycleCallbacks = null;
         }
 
+        if (backgroundBlurHelper != null) {
+            backgroundBlurHelper.release();
+            backgroundBlurHelper = null;
+        }
+        peekViewPool.clear();
+
         builder = null;
     }
 
@@ -475,6 +946,34 @@ public class PeekAndPop {
         initialiseGestureListener(view, position);
     }
 
+    /**
+     * Show the peek view when any item of the recycler view is long clicked, instead of adding
+     * each item with {@link #addLongClickView(View, int)} when it is bound.
+     * <p/>
+     * A single touch listener is added to the recycler view, the item and its adapter position
+     * are looked up when the item is touched.
+     *
+     * @param recyclerView the recycler view, any previously attached recycler view is detached
+     */
+    public void attachToRecyclerView(@NonNull RecyclerView recyclerView) {
+        if (this.recyclerView == recyclerView)
+            return;
+        detachFromRecyclerView();
+
+        this.recyclerView = recyclerView;
+        this.itemTouchListener = new PeekAndPopItemTouchListener(recyclerView);
+        recyclerView.addOnItemTouchListener(itemTouchListener);
+    }
+
+    public void detachFromRecyclerView() {
+        if (recyclerView != null) {
+            itemTouchListener.cancel();
+            recyclerView.removeOnItemTouchListener(itemTouchListener);
+            recyclerView = null;
+            itemTouchListener = null;
+        }
+    }
+
     /**
      * Specify id of view WITHIN the peek layout, this view will trigger on long hold events.
      * You can add multiple on long hold views
@@ -483,7 +982,9 @@ public class PeekAndPop {
      * @return
      */
     public void addLongHoldView(@IdRes int longHoldViewId, boolean receiveMultipleEvents) {
-        longHoldViews.add(new LongHoldView(peekView.findViewById(longHoldViewId), receiveMultipleEvents));
+        View view = peekView != null ? peekView.findViewById(longHoldViewId) : null;
+        longHoldViews.add(new LongHoldView(longHoldViewId, view, receiveMultipleEvents));
+        holdViewIndexesDirty = true;
     }
 
     /**
@@ -498,31 +999,70 @@ public class PeekAndPop {
      * @return
      */
     public void addHoldAndReleaseView(@IdRes int holdAndReleaseViewId) {
-        holdAndReleaseViews.add(new HoldAndReleaseView(peekView.findViewById(holdAndReleaseViewId)));
+        View view = peekView != null ? peekView.findViewById(holdAndReleaseViewId) : null;
+        holdAndReleaseViews.add(new HoldAndReleaseView(holdAndReleaseViewId, view));
+        holdViewIndexesDirty = true;
     }
 
-    public void triggerOnHoldEvent(@NonNull final View view, final int position) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                onHoldAndReleaseListener.onHold(view, position);
-            }
-        });
+    public void triggerOnHoldEvent(@NonNull View view, int position) {
+        if (onHoldAndReleaseListener != null)
+            onHoldAndReleaseListener.onHold(view, position);
     }
 
-    protected void triggerOnLeaveEvent(@NonNull final View view, final int position) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                onHoldAndReleaseListener.onLeave(view, position);
-            }
-        });
+    protected void triggerOnLeaveEvent(@NonNull View view, int position) {
+        if (onHoldAndReleaseListener != null)
+            onHoldAndReleaseListener.onLeave(view, position);
+    }
+
+    /**
+     * @return the current state of the peek, one of STATE_IDLE, STATE_PEEKING, STATE_PEEKED,
+     * STATE_POPPING or STATE_FLUNG
+     */
+    @PeekStates
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return the recorder of the peek metrics, or null if metrics aren't being collected
+     */
+    @Nullable
+    public PeekMetricsRecorder getPeekMetricsRecorder() {
+        return peekMetricsRecorder;
     }
 
+    /**
+     * If the peek view's inflation was deferred, this inflates it straight away.
+     *
+     * @return the peek view currently in the peek layout
+     */
     public View getPeekView() {
+        ensurePeekViewInitialised();
         return peekView;
     }
 
+    /**
+     * @return the view type of the peek view currently in the peek layout
+     */
+    public int getPeekViewType() {
+        return peekViewType;
+    }
+
+    public PeekViewPool getPeekViewPool() {
+        return peekViewPool;
+    }
+
+    public void setPeekViewTypeResolver(@Nullable PeekViewTypeResolver peekViewTypeResolver) {
+        this.peekViewTypeResolver = peekViewTypeResolver;
+    }
+
+    /**
+     * The scheduler used for all gesture timing, runs on the main looper.
+     */
+    public GestureScheduler getGestureScheduler() {
+        return gestureScheduler;
+    }
+
     public boolean isBlurBackground() {
         return blurBackground;
     }
@@ -531,6 +1071,14 @@ public class PeekAndPop {
         this.blurBackground = blurBackground;
     }
 
+    public boolean isAsyncBlur() {
+        return asyncBlur;
+    }
+
+    public void setAsyncBlur(boolean asyncBlur) {
+        this.asyncBlur = asyncBlur;
+    }
+
     public boolean isAnimateFling() {
         return animateFling;
     }
@@ -539,6 +1087,14 @@ public class PeekAndPop {
         this.animateFling = animateFling;
     }
 
+    public boolean isProcessHistoricalTouches() {
+        return processHistoricalTouches;
+    }
+
+    public void setProcessHistoricalTouches(boolean processHistoricalTouches) {
+        this.processHistoricalTouches = processHistoricalTouches;
+    }
+
     public void setLongHoldDuration(int duration) {
         this.customLongHoldDuration = duration;
     }
@@ -559,11 +1115,18 @@ public class PeekAndPop {
 
         // essentials
         protected final Activity activity;
-        protected int peekLayoutId = -1;
+        protected SparseIntArray peekLayoutIds;
 
         // optional extras
         protected ViewGroup parentViewGroup;
         protected ArrayList<View> longClickViews;
+        protected RecyclerView recyclerView;
+        protected PeekViewTypeResolver peekViewTypeResolver;
+        protected int peekViewPoolSize = PeekViewPool.DEFAULT_MAX_SIZE;
+        protected int inflationMode = INFLATE_IMMEDIATELY;
+        protected PeekContentBinder<?> peekContentBinder;
+        protected boolean collectMetrics = false;
+        protected OnPeekMetricsListener onPeekMetricsListener;
 
         protected OnFlingToActionListener onFlingToActionListener;
         protected OnGeneralActionListener onGeneralActionListener;
@@ -571,13 +1134,30 @@ public class PeekAndPop {
         protected OnHoldAndReleaseListener onHoldAndReleaseListener;
 
         protected boolean blurBackground = true;
+        protected float blurScale = BlurBuilder.DEFAULT_BITMAP_SCALE;
+        protected boolean downscaleBlurCapture = true;
+        protected boolean lowPrecisionBlur = false;
+        protected int luminanceBlurTint = Color.WHITE;
+        protected boolean regionOfInterestBlur = false;
+        protected int regionOfInterestFillColor = BlurBuilder.DEFAULT_REGION_FILL_COLOR;
+        protected boolean asyncBlur = false;
+        protected BlurEngine blurEngine;
+        protected float blurDimAmount = BackgroundBlurHelper.DEFAULT_DIM_AMOUNT;
+        protected int blurDimColor = BackgroundBlurHelper.DEFAULT_DIM_COLOR;
+        protected boolean cacheBlur = false;
+        protected boolean preBlurWhenIdle = false;
+        protected int liveBlurFps = 0;
         protected boolean animateFling = true;
         protected boolean allowUpwardsFling = true;
         protected boolean allowDownwardsFling = true;
+        protected boolean processHistoricalTouches = false;
+        protected boolean springAnimations = false;
+        protected boolean tracing = false;
 
         public Builder(@NonNull Activity activity) {
             this.activity = activity;
             this.longClickViews = new ArrayList<>();
+            this.peekLayoutIds = new SparseIntArray();
         }
 
         /**
@@ -587,7 +1167,45 @@ public class PeekAndPop {
          * @return
          */
         public Builder peekLayout(@LayoutRes int peekLayoutId) {
-            this.peekLayoutId = peekLayoutId;
+            return peekLayout(DEFAULT_PEEK_VIEW_TYPE, peekLayoutId);
+        }
+
+        /**
+         * Peek layout resource id for a view type, use with {@link #peekViewTypeResolver} to show a
+         * different peek layout depending on the view that was long clicked.
+         * Peek layouts are inflated the first time they are shown.
+         *
+         * @param viewType     the view type returned by the PeekViewTypeResolver
+         * @param peekLayoutId id of the onPeek layout resource
+         * @return
+         */
+        public Builder peekLayout(int viewType, @LayoutRes int peekLayoutId) {
+            this.peekLayoutIds.put(viewType, peekLayoutId);
+            return this;
+        }
+
+        /**
+         * Chooses which peek layout is shown for the view that was long clicked.
+         *
+         * @param peekViewTypeResolver
+         * @return
+         */
+        public Builder peekViewTypeResolver(@NonNull PeekViewTypeResolver peekViewTypeResolver) {
+            this.peekViewTypeResolver = peekViewTypeResolver;
+            return this;
+        }
+
+        /**
+         * The maximum number of inflated peek views to keep, defaults to 2. The least recently
+         * used peek view is dropped when another peek layout needs inflating.
+         *
+         * @param peekViewPoolSize
+         * @return
+         */
+        public Builder peekViewPoolSize(int peekViewPoolSize) {
+            if (peekViewPoolSize < 1)
+                throw new IllegalArgumentException("Peek view pool size must be at least 1.");
+            this.peekViewPoolSize = peekViewPoolSize;
             return this;
         }
 
@@ -604,6 +1222,44 @@ public class PeekAndPop {
             return this;
         }
 
+        /**
+         * Show the peek view when any item in the recycler view is long clicked.
+         * The position passed to the listeners is the adapter position of the item.
+         *
+         * @param recyclerView
+         * @return
+         */
+        public Builder recyclerView(@NonNull RecyclerView recyclerView) {
+            this.recyclerView = recyclerView;
+            return this;
+        }
+
+        /**
+         * When the peek view is inflated, defaults to INFLATE_IMMEDIATELY, in the constructor.
+         * INFLATE_ON_FIRST_USE waits until the first peek (or {@link PeekAndPop#getPeekView()}),
+         * INFLATE_WHEN_IDLE inflates on a background thread once the UI thread is idle after
+         * startup, falling back to the UI thread if the peek layout can't be inflated off it.
+         *
+         * @param inflationMode
+         * @return
+         */
+        public Builder peekViewInflation(@InflationModes int inflationMode) {
+            this.inflationMode = inflationMode;
+            return this;
+        }
+
+        /**
+         * Prepares the peek content on a background thread while the long click view is held
+         * down, and binds it into the peek view on the UI thread.
+         *
+         * @param peekContentBinder
+         * @return
+         */
+        public Builder peekContentBinder(@NonNull PeekContentBinder<?> peekContentBinder) {
+            this.peekContentBinder = peekContentBinder;
+            return this;
+        }
+
         /**
          * A listener for when the onPeek view is dragged enough.
          *
@@ -674,6 +1330,160 @@ public class PeekAndPop {
             return this;
         }
 
+        /**
+         * The scale the background is captured and blurred at, defaults to 0.2.
+         * Smaller values are faster and use less memory but give a blurrier background.
+         *
+         * @param blurScale scale between 0 and 1
+         * @return
+         */
+        public Builder blurScale(float blurScale) {
+            if (blurScale <= 0 || blurScale > 1)
+                throw new IllegalArgumentException("Blur scale must be greater than 0 and at most 1.");
+            this.blurScale = blurScale;
+            return this;
+        }
+
+        /**
+         * Draw the background straight into a downscaled bitmap when blurring, defaults to true.
+         * Setting this to false takes a full size screenshot first and scales it down afterwards,
+         * which is slower and uses a lot more memory.
+         *
+         * @param downscaleBlurCapture
+         * @return
+         */
+        public Builder downscaleBlurCapture(boolean downscaleBlurCapture) {
+            this.downscaleBlurCapture = downscaleBlurCapture;
+            return this;
+        }
+
+        /**
+         * Blur the background at reduced precision, defaults to false. The background is blurred
+         * as RGB_565, or as a single channel luminance tinted with the dim color with the
+         * RenderScript engine, which halves or quarters the memory used by the blur.
+         *
+         * @param lowPrecisionBlur
+         * @return
+         */
+        public Builder lowPrecisionBlur(boolean lowPrecisionBlur) {
+            this.lowPrecisionBlur = lowPrecisionBlur;
+            return this;
+        }
+
+        /**
+         * Blur the background at reduced precision, see {@link #lowPrecisionBlur(boolean)}.
+         *
+         * @param lowPrecisionBlur
+         * @param luminanceBlurTint color the brightest parts of a luminance blur are drawn in
+         * @return
+         */
+        public Builder lowPrecisionBlur(boolean lowPrecisionBlur, @ColorInt int luminanceBlurTint) {
+            this.lowPrecisionBlur = lowPrecisionBlur;
+            this.luminanceBlurTint = luminanceBlurTint;
+            return this;
+        }
+
+        /**
+         * Only blur the parts of the screen which are visible around the peek view, defaults to false.
+         * The system bars and the area behind the peek view aren't blurred, the area behind the
+         * peek view is filled with a solid color instead. Only use this with an opaque, rectangular
+         * peek view, the fill shows around it while it scales in.
+         *
+         * @param regionOfInterestBlur
+         * @return
+         */
+        public Builder regionOfInterestBlur(boolean regionOfInterestBlur) {
+            this.regionOfInterestBlur = regionOfInterestBlur;
+            return this;
+        }
+
+        /**
+         * Only blur the parts of the screen which are visible around the peek view, see
+         * {@link #regionOfInterestBlur(boolean)}.
+         *
+         * @param regionOfInterestBlur
+         * @param regionOfInterestFillColor color the area behind the peek view is filled with
+         * @return
+         */
+        public Builder regionOfInterestBlur(boolean regionOfInterestBlur, @ColorInt int regionOfInterestFillColor) {
+            this.regionOfInterestBlur = regionOfInterestBlur;
+            this.regionOfInterestFillColor = regionOfInterestFillColor;
+            return this;
+        }
+
+        /**
+         * Blur the background on a background thread, defaults to false.
+         * The peek view is shown straight away over a plain dim background and the blurred
+         * background fades in once it is ready.
+         *
+         * @param asyncBlur
+         * @return
+         */
+        public Builder asyncBlur(boolean asyncBlur) {
+            this.asyncBlur = asyncBlur;
+            return this;
+        }
+
+        /**
+         * The engine used to blur the background. Defaults to a {@link RenderScriptBlurEngine} on
+         * API 17 and above, and a {@link StackBlurEngine} below that.
+         * The engine is released when the PeekAndPop is destroyed.
+         *
+         * @param blurEngine
+         * @return
+         */
+        public Builder blurEngine(@NonNull BlurEngine blurEngine) {
+            this.blurEngine = blurEngine;
+            return this;
+        }
+
+        /**
+         * How much the blurred background is dimmed, defaults to 0.33 towards black.
+         *
+         * @param blurDimAmount amount between 0 (no dim) and 1 (solid dim color)
+         * @param blurDimColor  color to dim the blurred background towards
+         * @return
+         */
+        public Builder blurDim(float blurDimAmount, @ColorInt int blurDimColor) {
+            if (blurDimAmount < 0 || blurDimAmount > 1)
+                throw new IllegalArgumentException("Dim amount must be between 0 and 1.");
+            this.blurDimAmount = blurDimAmount;
+            this.blurDimColor = blurDimColor;
+            return this;
+        }
+
+        /**
+         * Keep the last blurred background and reuse it until the screen behind the peek view
+         * draws or scrolls again, defaults to false. Useful for screens that rarely change.
+         * Requires API 16 and above.
+         *
+         * @param cacheBlur
+         * @param preBlurWhenIdle if true, blur the background ahead of time whenever the UI thread
+         *                        is idle, so the next peek doesn't have to
+         * @return
+         */
+        public Builder cacheBlur(boolean cacheBlur, boolean preBlurWhenIdle) {
+            this.cacheBlur = cacheBlur;
+            this.preBlurWhenIdle = preBlurWhenIdle;
+            return this;
+        }
+
+        /**
+         * Keep blurring the background while the peek view is showing, for video or animated
+         * content behind it, defaults to 0 (off). The blur runs on a background thread, frames are
+         * skipped while a blur is still in progress and the blur scale is lowered if capturing
+         * takes too long. Disables the blur cache.
+         *
+         * @param liveBlurFps frames per second to blur at, e.g. 15 to 30, or 0 to blur once per peek
+         * @return
+         */
+        public Builder liveBlur(int liveBlurFps) {
+            if (liveBlurFps < 0)
+                throw new IllegalArgumentException("Live blur fps must not be negative.");
+            this.liveBlurFps = liveBlurFps;
+            return this;
+        }
+
         /**
          * Animate the peek view upwards when a it is flung, defaults to true.
          *
@@ -694,13 +1504,76 @@ public class PeekAndPop {
             return this;
         }
 
+        /**
+         * Measure the timings of every peek and pop, defaults to false. The timings are aggregated
+         * into histograms which can be dumped with {@link PeekAndPop#getPeekMetricsRecorder()}.
+         *
+         * @param collectMetrics
+         * @return
+         */
+        public Builder collectMetrics(boolean collectMetrics) {
+            this.collectMetrics = collectMetrics;
+            return this;
+        }
+
+        /**
+         * A listener for the timings of each peek and pop, also turns on collectMetrics.
+         *
+         * @param onPeekMetricsListener
+         * @return
+         */
+        public Builder onPeekMetricsListener(@NonNull OnPeekMetricsListener onPeekMetricsListener) {
+            this.onPeekMetricsListener = onPeekMetricsListener;
+            return this;
+        }
+
+        /**
+         * Add systrace/Perfetto trace sections around peeking, popping, blurring, touch handling
+         * and the gesture timers of this PeekAndPop, defaults to false. Requires API 18 and above,
+         * see {@link PeekTrace}.
+         *
+         * @param tracing
+         * @return
+         */
+        public Builder tracing(boolean tracing) {
+            this.tracing = tracing;
+            return this;
+        }
+
+        /**
+         * Animate the peek view's scale and position with springs, defaults to false.
+         * Springs carry on from the current velocity when a gesture is interrupted or the peek
+         * view is flung, rather than restarting a fixed duration animation.
+         *
+         * @param springAnimations
+         * @return
+         */
+        public Builder springAnimations(boolean springAnimations) {
+            this.springAnimations = springAnimations;
+            return this;
+        }
+
+        /**
+         * Process every touch sample batched into a move event, rather than just the latest one,
+         * defaults to false. On high refresh rate touch screens this makes sure quick movements over
+         * small long hold and hold and release views aren't missed, and that their events are timed
+         * from when the view was actually entered.
+         *
+         * @param processHistoricalTouches
+         * @return
+         */
+        public Builder processHistoricalTouches(boolean processHistoricalTouches) {
+            this.processHistoricalTouches = processHistoricalTouches;
+            return this;
+        }
+
         /**
          * Create the PeekAndPop object
          *
          * @return the PeekAndPop object
          */
         public PeekAndPop build() {
-            if (peekLayoutId == -1) {
+            if (peekLayoutIds.size() == 0) {
                 throw new IllegalArgumentException("No peekLayoutId specified.");
             }
             return new PeekAndPop(this);
@@ -710,23 +1583,34 @@ public class PeekAndPop {
     protected class PeekAndPopOnTouchListener implements View.OnTouchListener {
 
         private int position;
-        private Runnable longHoldRunnable;
+        private View view;
         private boolean peekShown;
+        private final GestureScheduler.Token longClickTimer;
 
         public PeekAndPopOnTouchListener(int position) {
             this.position = position;
+            this.longClickTimer = new GestureScheduler.Token(gestureScheduler, "PeekAndPop.longClickTimer") {
+                @Override
+                protected void onRun() {
+                    if (peekMetricsRecorder != null)
+                        peekMetricsRecorder.onTimerFired();
+                    peekShown = true;
+                    peek(view, PeekAndPopOnTouchListener.this.position);
+                }
+            };
         }
 
         @Override
         public boolean onTouch(final View view, MotionEvent event) {
-            if (!enabled) return false;
+            if (!enabled || builder == null) return false;
 
             if (event.getAction() == MotionEvent.ACTION_DOWN) {
                 peekShown = false;
-                cancelPendingTimer(view);
                 startTimer(view);
             } else if (event.getAction() == MotionEvent.ACTION_UP || event.getAction() == MotionEvent.ACTION_CANCEL) {
-                cancelPendingTimer(view);
+                longClickTimer.cancel();
+                if (!peekShown)
+                    cancelPeekContent();
             }
 
             if (peekShown)
@@ -736,53 +1620,124 @@ public class PeekAndPop {
         }
 
         /**
-         * Cancel pending timer and if the timer has already activated, run another runnable to
-         * pop the view.
+         * Start the long click timer, if it reaches the long click duration, peek
          *
          * @param view
          */
-        private void cancelPendingTimer(@NonNull final View view) {
-            longHoldTimer.cancel();
-            if (longHoldRunnable != null) {
-                longHoldRunnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        peekShown = false;
-                        pop(view, position);
-                        longHoldRunnable = null;
-                    }
-                };
-                builder.activity.runOnUiThread(longHoldRunnable);
-            }
+        private void startTimer(@NonNull View view) {
+            this.view = view;
+            longClickTimer.schedule(LONG_CLICK_DURATION);
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onTouchDown();
+            preparePeekContent(view, position);
         }
 
-        /**
-         * Start the longHoldTimer, if it reaches the long hold duration, peek
-         *
-         * @param view
-         */
-        private void startTimer(@NonNull final View view) {
-            longHoldTimer = new Timer();
-            longHoldTimer.schedule(new TimerTask() {
+        public void setPosition(int position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * Touch listener shared by all the items of a recycler view. The touched item and its adapter
+     * position are resolved on touch down, so nothing needs to be set up when items are bound.
+     */
+    protected class PeekAndPopItemTouchListener implements RecyclerView.OnItemTouchListener {
+
+        private final RecyclerView recyclerView;
+        private final int touchSlop;
+        private final GestureScheduler.Token longClickTimer;
+
+        private View view;
+        private int position;
+        private float touchDownX, touchDownY;
+        private boolean peekShown;
+
+        public PeekAndPopItemTouchListener(@NonNull RecyclerView recyclerView) {
+            this.recyclerView = recyclerView;
+            this.touchSlop = ViewConfiguration.get(recyclerView.getContext()).getScaledTouchSlop();
+            this.longClickTimer = new GestureScheduler.Token(gestureScheduler, "PeekAndPop.longClickTimer") {
                 @Override
-                public void run() {
+                protected void onRun() {
+                    if (peekMetricsRecorder != null)
+                        peekMetricsRecorder.onTimerFired();
                     peekShown = true;
-                    longHoldRunnable = new Runnable() {
-                        @Override
-                        public void run() {
-                            if (peekShown) {
-                                peek(view, position);
-                                longHoldRunnable = null;
-                            }
-                        }
-                    };
-                    builder.activity.runOnUiThread(longHoldRunnable);
+                    peek(view, position);
                 }
-            }, LONG_CLICK_DURATION);
+            };
         }
 
-        public void setPosition(int position) {
-            this.position = position;
+        @Override
+        public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+            if (!enabled || builder == null) return false;
+
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_DOWN) {
+                peekShown = false;
+                longClickTimer.cancel();
+                startTimer(event);
+            } else if (action == MotionEvent.ACTION_MOVE && !peekShown) {
+                // The list is being scrolled rather than long clicked
+                if (longClickTimer.isPending() && (Math.abs(event.getX() - touchDownX) > touchSlop || Math.abs(event.getY() - touchDownY) > touchSlop)) {
+                    longClickTimer.cancel();
+                    cancelPeekContent();
+                }
+            } else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                longClickTimer.cancel();
+                if (!peekShown)
+                    cancelPeekContent();
+            }
+
+            if (peekShown) {
+                handleTouch(view, event, position);
+                if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    peekShown = false;
+                else
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+            if (!peekShown)
+                return;
+
+            handleTouch(view, event, position);
+            int action = event.getActionMasked();
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                peekShown = false;
+        }
+
+        @Override
+        public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+        }
+
+        /**
+         * Find the touched item and start the long click timer, if it reaches the long click
+         * duration, peek
+         */
+        private void startTimer(@NonNull MotionEvent event) {
+            touchDownX = event.getX();
+            touchDownY = event.getY();
+            View child = recyclerView.findChildViewUnder(touchDownX, touchDownY);
+            if (child == null)
+                return;
+            int adapterPosition = recyclerView.getChildAdapterPosition(child);
+            if (adapterPosition == RecyclerView.NO_POSITION)
+                return;
+
+            view = child;
+            position = adapterPosition;
+            longClickTimer.schedule(LONG_CLICK_DURATION);
+            if (peekMetricsRecorder != null)
+                peekMetricsRecorder.onTouchDown();
+            preparePeekContent(view, position);
+        }
+
+        public void cancel() {
+            longClickTimer.cancel();
+            peekShown = false;
+            view = null;
         }
     }
 
@@ -835,7 +1790,9 @@ public class PeekAndPop {
 
         private void flingToAction(@FlingDirections int direction, float velocityX, float velocityY) {
             onFlingToActionListener.onFlingToAction(view, position, direction);
-            if (animateFling) {
+            if (state == STATE_POPPING)
+                state = STATE_FLUNG;
+            if (animateFling && state == STATE_FLUNG) {
                 if (direction == FLING_UPWARDS) {
                     peekAnimationHelper.animateExpand(ANIMATION_POP_DURATION, popTime);
                     peekAnimationHelper.animateFling(velocityX, velocityY, ANIMATION_POP_DURATION, popTime, -FLING_VELOCITY_MAX);
@@ -846,6 +1803,21 @@ public class PeekAndPop {
         }
     }
 
+    public interface OnPeekMetricsListener {
+        /**
+         * Called on the UI thread once a peek has popped and its pop animation has finished.
+         * The metrics object is reused, copy any values that need keeping.
+         */
+        void onPeekMetrics(PeekMetrics metrics);
+    }
+
+    public interface PeekViewTypeResolver {
+        /**
+         * @return the view type of the peek layout to show for the long clicked view
+         */
+        int getPeekViewType(View longClickView, int position);
+    }
+
     public interface OnFlingToActionListener {
         void onFlingToAction(View longClickView, int position, int direction);
     }
@@ -1,32 +1,109 @@
 package com.peekandpop.shalskar.peekandpop;
 
 import android.animation.Animator;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.Configuration;
-import android.graphics.drawable.RippleDrawable;
-import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+import android.view.animation.LinearInterpolator;
 import android.view.animation.OvershootInterpolator;
 
 /**
  * Created by Vincent on 21/01/2016.
  * <p/>
  * Helper class for animating the PeekAndPop views
+ * <p/>
+ * Each transition is driven by a single reusable ValueAnimator which sets the scale, alpha and
+ * translation through the View setters. The animated views are put on a hardware layer for the
+ * duration of the transition, so each frame only recomposites the layer.
+ * <p/>
+ * If spring animations are enabled, the peek view's scale and translation are instead driven by
+ * springs which carry their velocity through interrupted gestures and flings.
  */
 public class PeekAnimationHelper {
 
+    private static final Interpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+    private static final Interpolator OVERSHOOT_INTERPOLATOR = new OvershootInterpolator(1.2f);
+    private static final Interpolator DECELERATE_INTERPOLATOR = new DecelerateInterpolator();
+    private static final Interpolator POP_ALPHA_INTERPOLATOR = new DecelerateInterpolator(1.5f);
+
+    private static final float PEEK_SCALE = 1f;
+    private static final float RETURN_SCALE = 0.75f;
+    private static final float EXPAND_SCALE = 1.025f;
+
+    private static final float PEEK_STIFFNESS = 500f;
+    private static final float PEEK_DAMPING_RATIO = 0.6f;
+    private static final float RETURN_STIFFNESS = 400f;
+    private static final float RETURN_DAMPING_RATIO = 1f;
+    private static final float FLING_STIFFNESS = 120f;
+    private static final float FLING_DAMPING_RATIO = 1f;
+    private static final float SCALE_REST_THRESHOLD = 0.001f;
+    private static final float TRANSLATION_REST_THRESHOLD = 0.5f;
+
     private View peekLayout;
     private View peekView;
     private Context context;
 
+    private final Transition peekTransition;
+    private final Transition popTransition;
+    private final Transition returnTransition;
+    private final Transition expandTransition;
+    private final Transition flingTransition;
+
+    private boolean springAnimations;
+    private SpringAnimator scaleSpring;
+    private SpringAnimator translationSpring;
+    private boolean springPortrait;
+    private View springView;
+
+    // With springs, the pop listener waits for the layout to fade out and the springs to settle
+    private Animator.AnimatorListener popEndListener;
+    private Animator popEndAnimation;
+    private boolean popFadeEnded;
+
+    // Number of running transitions using each view's hardware layer
+    private int peekLayoutLayers;
+    private int peekViewLayers;
+
     public PeekAnimationHelper(Context context, View peekLayout, View peekView) {
         this.context = context;
         this.peekLayout = peekLayout;
         this.peekView = peekView;
+
+        this.peekTransition = new Transition();
+        this.popTransition = new Transition();
+        this.returnTransition = new Transition();
+        this.expandTransition = new Transition();
+        this.flingTransition = new Transition();
+    }
+
+    /**
+     * Set the peek view to animate, used when a different peek layout is shown.
+     * Any running transitions are cancelled.
+     */
+    public void setPeekView(@NonNull View peekView) {
+        if (this.peekView != peekView) {
+            cancelAll();
+            this.peekView = peekView;
+        }
+    }
+
+    /**
+     * Drive the peek view's scale and translation with springs instead of fixed duration animations.
+     */
+    public void setSpringAnimations(boolean springAnimations) {
+        if (!springAnimations)
+            cancelSprings();
+        this.springAnimations = springAnimations;
+    }
+
+    public boolean isSpringAnimations() {
+        return springAnimations;
     }
 
     /**
@@ -36,20 +113,22 @@ public class PeekAnimationHelper {
      * Also fades the peek background layout in.
      */
     public void animatePeek(int duration) {
-        peekView.setAlpha(1);
-        ObjectAnimator animatorLayoutAlpha = ObjectAnimator.ofFloat(peekLayout, "alpha", 1);
-        animatorLayoutAlpha.setInterpolator(new OvershootInterpolator(1.2f));
-        animatorLayoutAlpha.setDuration(duration);
-        ObjectAnimator animatorScaleX = ObjectAnimator.ofFloat(peekView, "scaleX", 1);
-        animatorScaleX.setDuration(duration);
-        ObjectAnimator animatorScaleY = ObjectAnimator.ofFloat(peekView, "scaleY", 1);
-        animatorScaleY.setDuration(duration);
-        AnimatorSet animatorSet = new AnimatorSet();
-        animatorSet.setInterpolator(new OvershootInterpolator(1.2f));
-        animatorSet.play(animatorScaleX).with(animatorScaleY);
+        animatePeek(duration, null);
+    }
 
-        animatorSet.start();
-        animatorLayoutAlpha.start();
+    /**
+     * Same as {@link #animatePeek(int)}, the listener's onAnimationEnd is called once the peek
+     * animation has finished, but not if it was cancelled.
+     */
+    public void animatePeek(int duration, @Nullable Animator.AnimatorListener animatorListener) {
+        peekView.setAlpha(1);
+        peekTransition.reset();
+        peekTransition.animateLayoutAlpha(1, OVERSHOOT_INTERPOLATOR);
+        if (springAnimations)
+            animateScaleSpring(PEEK_SCALE, PEEK_STIFFNESS, PEEK_DAMPING_RATIO);
+        else
+            peekTransition.animateScale(PEEK_SCALE, OVERSHOOT_INTERPOLATOR);
+        peekTransition.start(duration, animatorListener);
     }
 
     /**
@@ -57,15 +136,25 @@ public class PeekAnimationHelper {
      * <p/>
      * Animates the peek view to return to it's original position and shrink.
      * Also animate the peek background layout to fade out.
+     * <p/>
+     * The listener's onAnimationEnd is called once the pop has finished, but not if it was
+     * cancelled. With springs this waits for the springs to settle as well, including a fling
+     * started after the pop, and the peek layout is hidden as soon as it has faded out.
      */
     public void animatePop(Animator.AnimatorListener animatorListener, int duration) {
-        ObjectAnimator animatorLayoutAlpha = ObjectAnimator.ofFloat(peekLayout, "alpha", 0);
-        animatorLayoutAlpha.setDuration(duration);
-        animatorLayoutAlpha.addListener(animatorListener);
-        animatorLayoutAlpha.setInterpolator(new DecelerateInterpolator(1.5f));
-
-        animatorLayoutAlpha.start();
-        animateReturn(duration);
+        popTransition.reset();
+        popTransition.animateLayoutAlpha(0, POP_ALPHA_INTERPOLATOR);
+        if (springAnimations) {
+            animateScaleSpring(RETURN_SCALE, RETURN_STIFFNESS, RETURN_DAMPING_RATIO);
+            animateTranslationSpring(0, 0, RETURN_STIFFNESS, RETURN_DAMPING_RATIO);
+            popEndListener = animatorListener;
+            popFadeEnded = false;
+            popTransition.start(duration, popFadeListener);
+        } else {
+            popTransition.animateScale(RETURN_SCALE, DECELERATE_INTERPOLATOR);
+            popTransition.animateTranslation(0, DECELERATE_INTERPOLATOR);
+            popTransition.start(duration, animatorListener);
+        }
     }
 
     /**
@@ -74,23 +163,15 @@ public class PeekAnimationHelper {
      * Animate the peek view back to it's original position and shrink it.
      */
     public void animateReturn(int duration) {
-        ObjectAnimator animatorTranslate;
-        if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            animatorTranslate = ObjectAnimator.ofFloat(peekView, "translationY", 0);
-        } else {
-            animatorTranslate = ObjectAnimator.ofFloat(peekView, "translationX", 0);
+        if (springAnimations) {
+            animateScaleSpring(RETURN_SCALE, RETURN_STIFFNESS, RETURN_DAMPING_RATIO);
+            animateTranslationSpring(0, 0, RETURN_STIFFNESS, RETURN_DAMPING_RATIO);
+            return;
         }
-        ObjectAnimator animatorShrinkY = ObjectAnimator.ofFloat(peekView, "scaleY", 0.75f);
-        ObjectAnimator animatorShrinkX = ObjectAnimator.ofFloat(peekView, "scaleX", 0.75f);
-        animatorShrinkX.setInterpolator(new DecelerateInterpolator());
-        animatorShrinkY.setInterpolator(new DecelerateInterpolator());
-        animatorTranslate.setInterpolator(new DecelerateInterpolator());
-        animatorShrinkX.setDuration(duration);
-        animatorShrinkY.setDuration(duration);
-        animatorTranslate.setDuration(duration);
-        animatorShrinkX.start();
-        animatorShrinkY.start();
-        animatorTranslate.start();
+        returnTransition.reset();
+        returnTransition.animateScale(RETURN_SCALE, DECELERATE_INTERPOLATOR);
+        returnTransition.animateTranslation(0, DECELERATE_INTERPOLATOR);
+        returnTransition.start(duration, null);
     }
 
     /**
@@ -99,15 +180,18 @@ public class PeekAnimationHelper {
      * Animate the peek view to expand slightly.
      */
     public void animateExpand(int duration, long popTime) {
+        if (springAnimations) {
+            animateScaleSpring(EXPAND_SCALE, RETURN_STIFFNESS, RETURN_DAMPING_RATIO);
+            return;
+        }
         long timeDifference = System.currentTimeMillis() - popTime;
-        ObjectAnimator animatorExpandY = ObjectAnimator.ofFloat(peekView, "scaleY", 1.025f);
-        ObjectAnimator animatorExpandX = ObjectAnimator.ofFloat(peekView, "scaleX", 1.025f);
-        animatorExpandX.setInterpolator(new DecelerateInterpolator());
-        animatorExpandY.setInterpolator(new DecelerateInterpolator());
-        animatorExpandX.setDuration(Math.max(0, duration - timeDifference));
-        animatorExpandY.setDuration(Math.max(0, duration - timeDifference));
-        animatorExpandX.start();
-        animatorExpandY.start();
+        // The expand takes over the scale from the pop
+        popTransition.stopScale();
+        returnTransition.stopScale();
+
+        expandTransition.reset();
+        expandTransition.animateScale(EXPAND_SCALE, DECELERATE_INTERPOLATOR);
+        expandTransition.start(Math.max(0, duration - timeDifference), null);
     }
 
 
@@ -120,18 +204,292 @@ public class PeekAnimationHelper {
      **/
     public void animateFling(float velocityX, float velocityY, int duration, long popTime, float flingVelocityMax) {
         long timeDifference = System.currentTimeMillis() - popTime;
-        if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
-            float translationAmount = Math.max(velocityY / 8, flingVelocityMax);
-            ObjectAnimator animatorTranslateY = ObjectAnimator.ofFloat(peekView, "translationY", translationAmount);
-            animatorTranslateY.setInterpolator(new DecelerateInterpolator());
-            animatorTranslateY.setDuration(Math.max(0, duration - timeDifference));
-            animatorTranslateY.start();
-        } else if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            float translationAmount = Math.max(velocityX / 8, flingVelocityMax);
-            ObjectAnimator animatorTranslateX = ObjectAnimator.ofFloat(peekView, "translationX", translationAmount);
-            animatorTranslateX.setInterpolator(new DecelerateInterpolator());
-            animatorTranslateX.setDuration(Math.max(0, duration - timeDifference));
-            animatorTranslateX.start();
+        float velocity = isPortrait() ? velocityY : velocityX;
+        float translationAmount = Math.max(velocity / 8, flingVelocityMax);
+        if (springAnimations) {
+            // Continue from the fling's velocity rather than a fixed duration
+            animateTranslationSpring(translationAmount, velocity, FLING_STIFFNESS, FLING_DAMPING_RATIO);
+            return;
+        }
+        // The fling takes over the translation from the pop
+        popTransition.stopTranslation();
+        returnTransition.stopTranslation();
+
+        flingTransition.reset();
+        flingTransition.animateTranslation(translationAmount, DECELERATE_INTERPOLATOR);
+        flingTransition.start(Math.max(0, duration - timeDifference), null);
+    }
+
+    /**
+     * Cancel all running transitions and springs, leaving the views as they are.
+     */
+    public void cancelAll() {
+        cancelTransitions();
+        cancelSprings();
+    }
+
+    /**
+     * Cancel the running fixed duration transitions, springs keep running so they can be
+     * retargeted by the next animation.
+     */
+    public void cancelTransitions() {
+        popEndListener = null;
+        peekTransition.cancel();
+        popTransition.cancel();
+        returnTransition.cancel();
+        expandTransition.cancel();
+        flingTransition.cancel();
+    }
+
+    /**
+     * Stop the springs where they are, e.g. before the peek view is reset.
+     */
+    public void cancelSprings() {
+        if (scaleSpring != null)
+            scaleSpring.cancel();
+        if (translationSpring != null)
+            translationSpring.cancel();
+    }
+
+    private void animateScaleSpring(float scale, float stiffness, float dampingRatio) {
+        if (scaleSpring == null)
+            scaleSpring = new SpringAnimator(SCALE_REST_THRESHOLD, springListener);
+        startSpring(scaleSpring, peekView.getScaleX(), stiffness, dampingRatio);
+        scaleSpring.animateTo(scale);
+    }
+
+    private void animateTranslationSpring(float translation, float velocity, float stiffness, float dampingRatio) {
+        if (translationSpring == null)
+            translationSpring = new SpringAnimator(TRANSLATION_REST_THRESHOLD, springListener);
+        if (!translationSpring.isRunning())
+            springPortrait = isPortrait();
+        startSpring(translationSpring, springPortrait ? peekView.getTranslationY() : peekView.getTranslationX(),
+                stiffness, dampingRatio);
+        translationSpring.addVelocity(velocity);
+        translationSpring.animateTo(translation);
+    }
+
+    private void startSpring(SpringAnimator spring, float value, float stiffness, float dampingRatio) {
+        spring.setSpring(stiffness, dampingRatio);
+        if (!spring.isRunning()) {
+            spring.setStartValue(value, 0);
+            if (springView == null) {
+                springView = peekView;
+                acquireLayers(null, springView);
+            }
+        }
+    }
+
+    private final Animator.AnimatorListener popFadeListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // The peek layout is invisible now, hide it so it stops taking touches while a fling settles
+            peekLayout.setVisibility(View.GONE);
+            popEndAnimation = animation;
+            popFadeEnded = true;
+            dispatchPopEndIfSettled();
+        }
+    };
+
+    private void dispatchPopEndIfSettled() {
+        boolean scaleRunning = scaleSpring != null && scaleSpring.isRunning();
+        boolean translationRunning = translationSpring != null && translationSpring.isRunning();
+        if (popEndListener == null || !popFadeEnded || scaleRunning || translationRunning)
+            return;
+
+        Animator.AnimatorListener endListener = popEndListener;
+        Animator animation = popEndAnimation;
+        popEndListener = null;
+        popEndAnimation = null;
+        endListener.onAnimationEnd(animation);
+    }
+
+    private final SpringAnimator.OnSpringUpdateListener springListener = new SpringAnimator.OnSpringUpdateListener() {
+        @Override
+        public void onSpringUpdate(@NonNull SpringAnimator spring, float value) {
+            if (springView == null)
+                return;
+            if (spring == scaleSpring) {
+                springView.setScaleX(value);
+                springView.setScaleY(value);
+            } else if (springPortrait) {
+                springView.setTranslationY(value);
+            } else {
+                springView.setTranslationX(value);
+            }
+        }
+
+        @Override
+        public void onSpringEnd(@NonNull SpringAnimator spring, boolean cancelled) {
+            boolean scaleRunning = scaleSpring != null && scaleSpring.isRunning();
+            boolean translationRunning = translationSpring != null && translationSpring.isRunning();
+            if (!scaleRunning && !translationRunning && springView != null) {
+                releaseLayers(null, springView);
+                springView = null;
+            }
+
+            // A cancelled spring has been stopped before the pop finished
+            if (cancelled)
+                popEndListener = null;
+            else
+                dispatchPopEndIfSettled();
+        }
+    };
+
+    private boolean isPortrait() {
+        return context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
+    }
+
+    private void acquireLayers(View layout, View view) {
+        if (layout != null && peekLayoutLayers++ == 0)
+            layout.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        if (view != null && peekViewLayers++ == 0)
+            view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+    }
+
+    private void releaseLayers(View layout, View view) {
+        if (layout != null && --peekLayoutLayers == 0)
+            layout.setLayerType(View.LAYER_TYPE_NONE, null);
+        if (view != null && --peekViewLayers == 0)
+            view.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+
+    /**
+     * A transition of the peek layout's alpha and the peek view's scale and translation, from
+     * their values when the transition starts. Each property has its own interpolator applied to
+     * the linear progress of the animator.
+     */
+    private class Transition extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+        private final ValueAnimator animator;
+
+        private boolean animateLayoutAlpha;
+        private boolean animateScale;
+        private boolean animateTranslation;
+        private Interpolator layoutAlphaInterpolator;
+        private Interpolator scaleInterpolator;
+        private Interpolator translationInterpolator;
+        private float layoutAlphaFrom, layoutAlphaTo;
+        private float scaleXFrom, scaleYFrom, scaleTo;
+        private float translationFrom, translationTo;
+        private boolean portrait;
+
+        // The views the transition was started on and holds hardware layers for
+        private View layout;
+        private View view;
+        private boolean cancelled;
+        private Animator.AnimatorListener listener;
+
+        Transition() {
+            animator = ValueAnimator.ofFloat(0, 1);
+            animator.setInterpolator(LINEAR_INTERPOLATOR);
+            animator.addUpdateListener(this);
+            animator.addListener(this);
+        }
+
+        void reset() {
+            cancel();
+            animateLayoutAlpha = false;
+            animateScale = false;
+            animateTranslation = false;
+        }
+
+        void animateLayoutAlpha(float to, Interpolator interpolator) {
+            animateLayoutAlpha = true;
+            layoutAlphaTo = to;
+            layoutAlphaInterpolator = interpolator;
+        }
+
+        void animateScale(float to, Interpolator interpolator) {
+            animateScale = true;
+            scaleTo = to;
+            scaleInterpolator = interpolator;
+        }
+
+        void animateTranslation(float to, Interpolator interpolator) {
+            animateTranslation = true;
+            translationTo = to;
+            translationInterpolator = interpolator;
+        }
+
+        void stopScale() {
+            animateScale = false;
+        }
+
+        void stopTranslation() {
+            animateTranslation = false;
+        }
+
+        void start(long duration, @Nullable Animator.AnimatorListener listener) {
+            this.listener = listener;
+            layout = animateLayoutAlpha ? peekLayout : null;
+            view = animateScale || animateTranslation ? peekView : null;
+            portrait = isPortrait();
+
+            layoutAlphaFrom = peekLayout.getAlpha();
+            scaleXFrom = peekView.getScaleX();
+            scaleYFrom = peekView.getScaleY();
+            translationFrom = portrait ? peekView.getTranslationY() : peekView.getTranslationX();
+
+            cancelled = false;
+            animator.setDuration(duration);
+            animator.start();
+        }
+
+        void cancel() {
+            if (animator.isStarted())
+                animator.cancel();
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            if (animateLayoutAlpha && layout != null) {
+                float progress = layoutAlphaInterpolator.getInterpolation(fraction);
+                layout.setAlpha(layoutAlphaFrom + (layoutAlphaTo - layoutAlphaFrom) * progress);
+            }
+            if (view == null)
+                return;
+            if (animateScale) {
+                float progress = scaleInterpolator.getInterpolation(fraction);
+                view.setScaleX(scaleXFrom + (scaleTo - scaleXFrom) * progress);
+                view.setScaleY(scaleYFrom + (scaleTo - scaleYFrom) * progress);
+            }
+            if (animateTranslation) {
+                float progress = translationInterpolator.getInterpolation(fraction);
+                float translation = translationFrom + (translationTo - translationFrom) * progress;
+                if (portrait)
+                    view.setTranslationY(translation);
+                else
+                    view.setTranslationX(translation);
+            }
+        }
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            acquireLayers(layout, view);
+            if (listener != null)
+                listener.onAnimationStart(animation);
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            cancelled = true;
+            if (listener != null)
+                listener.onAnimationCancel(animation);
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            releaseLayers(layout, view);
+            layout = null;
+            view = null;
+
+            Animator.AnimatorListener endListener = listener;
+            listener = null;
+            // A cancelled transition has been replaced, the listener shouldn't act on its end
+            if (endListener != null && !cancelled)
+                endListener.onAnimationEnd(animation);
         }
     }
 }
@@ -0,0 +1,39 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Binds content into the peek view ahead of the peek.
+ * <p/>
+ * The content is prepared on a background thread as soon as a long click view is touched, so
+ * slow work such as decoding images happens while the user is still holding down, and is then
+ * bound into the peek view on the UI thread.
+ *
+ * @param <T> type of the prepared content
+ */
+public interface PeekContentBinder<T> {
+
+    /**
+     * Called on a background thread when a long click view is touched down. Must not modify any
+     * views, only read state of the long click view that doesn't change while it is held, such as
+     * its tag.
+     *
+     * @param longClickView the long click view that was touched
+     * @param position      position of the long click view, -1 if it was added without one
+     * @return the prepared content, passed to {@link #bindContent(View, Object, int)}
+     */
+    @Nullable
+    T prepareContent(@NonNull View longClickView, int position);
+
+    /**
+     * Called on the UI thread to bind the prepared content into the peek view. Called just before
+     * the peek animation starts if the content is ready by then, otherwise as soon as it is ready.
+     *
+     * @param peekView the peek view being shown
+     * @param content  the content returned by {@link #prepareContent(View, int)}
+     * @param position position of the long click view
+     */
+    void bindContent(@NonNull View peekView, @Nullable T content, int position);
+}
@@ -0,0 +1,164 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.View;
+
+/**
+ * Runs a {@link PeekContentBinder}, preparing content on a background thread and binding it on
+ * the UI thread once both the content is ready and the peek is showing.
+ */
+class PeekContentLoader<T> {
+
+    private final PeekContentBinder<T> binder;
+    private final Handler mainHandler;
+
+    private HandlerThread prepareThread;
+    private Handler prepareHandler;
+
+    // Incremented for every touch down and every cancel, so stale content can be dropped
+    private volatile int generation;
+
+    private boolean prepared;
+    private T content;
+    private int position;
+    private View longClickView;
+    private View peekView;
+
+    // Handed between the threads under the loader's lock, so the runnables can be reused
+    private int requestGeneration;
+    private View requestView;
+    private int requestPosition;
+    private boolean hasResult;
+    private int resultGeneration;
+    private T resultContent;
+
+    private final Runnable prepareRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int preparingGeneration;
+            View view;
+            int preparingPosition;
+            synchronized (PeekContentLoader.this) {
+                preparingGeneration = requestGeneration;
+                view = requestView;
+                preparingPosition = requestPosition;
+                requestView = null;
+            }
+            if (view == null || preparingGeneration != generation)
+                return;
+
+            T preparedContent = binder.prepareContent(view, preparingPosition);
+            synchronized (PeekContentLoader.this) {
+                hasResult = true;
+                resultGeneration = preparingGeneration;
+                resultContent = preparedContent;
+            }
+            mainHandler.post(deliverRunnable);
+        }
+    };
+
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int preparedGeneration;
+            T preparedContent;
+            synchronized (PeekContentLoader.this) {
+                if (!hasResult)
+                    return;
+                hasResult = false;
+                preparedGeneration = resultGeneration;
+                preparedContent = resultContent;
+                resultContent = null;
+            }
+            onPrepared(preparedGeneration, preparedContent);
+        }
+    };
+
+    PeekContentLoader(@NonNull PeekContentBinder<T> binder) {
+        this.binder = binder;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Start preparing the content for the long click view, dropping any content prepared before.
+     */
+    void prepare(@NonNull View longClickView, int position) {
+        cancel();
+        this.longClickView = longClickView;
+        this.position = position;
+
+        if (prepareThread == null) {
+            prepareThread = new HandlerThread("PeekAndPop-Prepare");
+            prepareThread.start();
+            prepareHandler = new Handler(prepareThread.getLooper());
+        }
+        synchronized (this) {
+            requestGeneration = generation;
+            requestView = longClickView;
+            requestPosition = position;
+        }
+        prepareHandler.removeCallbacks(prepareRunnable);
+        prepareHandler.post(prepareRunnable);
+    }
+
+    private void onPrepared(int preparedGeneration, T preparedContent) {
+        if (preparedGeneration != generation)
+            return;
+        prepared = true;
+        content = preparedContent;
+        if (peekView != null)
+            bind();
+    }
+
+    /**
+     * The peek is showing, bind the content now if it is ready or once it is.
+     */
+    void onPeek(@NonNull View peekView, @NonNull View longClickView, int position) {
+        if (longClickView != this.longClickView || position != this.position) {
+            cancel();
+            return;
+        }
+        this.peekView = peekView;
+        if (prepared)
+            bind();
+    }
+
+    private void bind() {
+        View view = peekView;
+        T boundContent = content;
+        peekView = null;
+        longClickView = null;
+        content = null;
+        prepared = false;
+        binder.bindContent(view, boundContent, position);
+    }
+
+    /**
+     * Drop any content that is being prepared or hasn't been bound yet.
+     */
+    void cancel() {
+        generation++;
+        prepared = false;
+        content = null;
+        longClickView = null;
+        peekView = null;
+        synchronized (this) {
+            requestView = null;
+            hasResult = false;
+            resultContent = null;
+        }
+    }
+
+    void release() {
+        cancel();
+        mainHandler.removeCallbacks(deliverRunnable);
+        if (prepareThread != null) {
+            prepareThread.quit();
+            prepareThread = null;
+            prepareHandler = null;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.support.annotation.IntDef;
+
+/**
+ * Timings of a single peek and pop gesture, reported by {@link PeekMetricsRecorder}.
+ * <p/>
+ * Times are in milliseconds, frame counts are whole frames. A metric that couldn't be measured
+ * for the gesture is NaN, e.g. the blur time when the background isn't blurred, or the frame
+ * metrics below API 16.
+ */
+public class PeekMetrics {
+
+    @IntDef({TOUCH_DOWN_TO_TIMER, TIMER_TO_PEEK, BLUR, FIRST_FRAME, PEEK_DROPPED_FRAMES, POP_DROPPED_FRAMES})
+    public @interface Metrics {
+    }
+
+    /**
+     * Time from touching down on the long click view until the long click timer fired.
+     */
+    public static final int TOUCH_DOWN_TO_TIMER = 0;
+    /**
+     * Time from the long click timer firing until the peek started on the UI thread.
+     */
+    public static final int TIMER_TO_PEEK = 1;
+    /**
+     * Time spent blurring the background on the UI thread during the peek.
+     */
+    public static final int BLUR = 2;
+    /**
+     * Time from the peek starting until the first frame of the peek animation.
+     */
+    public static final int FIRST_FRAME = 3;
+    /**
+     * Frames dropped while the peek animation was running.
+     */
+    public static final int PEEK_DROPPED_FRAMES = 4;
+    /**
+     * Frames dropped while the pop animation was running.
+     */
+    public static final int POP_DROPPED_FRAMES = 5;
+
+    static final int METRIC_COUNT = 6;
+
+    private final float[] values = new float[METRIC_COUNT];
+    private int peekFrames;
+    private int popFrames;
+
+    PeekMetrics() {
+        reset();
+    }
+
+    void reset() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.NaN;
+        }
+        peekFrames = 0;
+        popFrames = 0;
+    }
+
+    void set(@Metrics int metric, float value) {
+        values[metric] = value;
+    }
+
+    void setFrames(int peekFrames, int popFrames) {
+        this.peekFrames = peekFrames;
+        this.popFrames = popFrames;
+    }
+
+    /**
+     * @return the value of the metric, or NaN if it wasn't measured
+     */
+    public float get(@Metrics int metric) {
+        return values[metric];
+    }
+
+    /**
+     * @return the number of frames drawn while the peek animation was running
+     */
+    public int getPeekFrames() {
+        return peekFrames;
+    }
+
+    /**
+     * @return the number of frames drawn while the pop animation was running
+     */
+    public int getPopFrames() {
+        return popFrames;
+    }
+
+    static String getName(@Metrics int metric) {
+        switch (metric) {
+            case TOUCH_DOWN_TO_TIMER:
+                return "touchDownToTimer";
+            case TIMER_TO_PEEK:
+                return "timerToPeek";
+            case BLUR:
+                return "blur";
+            case FIRST_FRAME:
+                return "firstFrame";
+            case PEEK_DROPPED_FRAMES:
+                return "peekDroppedFrames";
+            case POP_DROPPED_FRAMES:
+                return "popDroppedFrames";
+            default:
+                return "unknown";
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PeekMetrics{");
+        for (int i = 0; i < values.length; i++) {
+            builder.append(getName(i)).append('=').append(values[i]).append(", ");
+        }
+        return builder.append("peekFrames=").append(peekFrames)
+                .append(", popFrames=").append(popFrames).append('}').toString();
+    }
+}
@@ -0,0 +1,308 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+
+import java.io.PrintWriter;
+
+/**
+ * Measures the timings of each peek and pop gesture, reports them to an
+ * {@link PeekAndPop.OnPeekMetricsListener} and aggregates them into histograms.
+ * <p/>
+ * Frames are counted with Choreographer frame callbacks while the peek and pop animations are
+ * running, a frame is counted as dropped for every refresh interval missed between two frames.
+ * Must only be used from the UI thread.
+ */
+public class PeekMetricsRecorder {
+
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    private static final float NANOS_PER_MILLI = 1000000f;
+
+    private static final int PHASE_NONE = 0;
+    private static final int PHASE_PEEK = 1;
+    private static final int PHASE_PEEKED = 2;
+    private static final int PHASE_POP = 3;
+
+    private final PeekMetrics metrics = new PeekMetrics();
+    private final Histogram[] histograms = new Histogram[PeekMetrics.METRIC_COUNT];
+    private final long frameIntervalNanos;
+    private final FrameMonitor frameMonitor;
+    private PeekAndPop.OnPeekMetricsListener listener;
+
+    private long touchDownTime;
+    private long timerFiredTime;
+    private long peekTime;
+    private float blurMillis;
+    private int phase = PHASE_NONE;
+
+    private boolean firstFrameRecorded;
+    private long lastFrameTime;
+    private int frames;
+    private int droppedFrames;
+    private int peekFrames;
+
+    /**
+     * @param refreshRate refresh rate of the display in frames per second, or 0 to assume 60
+     */
+    public PeekMetricsRecorder(float refreshRate, @Nullable PeekAndPop.OnPeekMetricsListener listener) {
+        this.frameIntervalNanos = (long) (1e9 / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+        this.listener = listener;
+        this.frameMonitor = Build.VERSION.SDK_INT >= 16 ? new FrameMonitor() : null;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    public void setListener(@Nullable PeekAndPop.OnPeekMetricsListener listener) {
+        this.listener = listener;
+    }
+
+    void onTouchDown() {
+        touchDownTime = System.nanoTime();
+        timerFiredTime = 0;
+    }
+
+    void onTimerFired() {
+        timerFiredTime = System.nanoTime();
+    }
+
+    void onPeek() {
+        // A new peek before the last pop finished still reports the last gesture
+        if (phase != PHASE_NONE)
+            finishGesture();
+
+        peekTime = System.nanoTime();
+        metrics.reset();
+        if (touchDownTime != 0 && timerFiredTime >= touchDownTime)
+            metrics.set(PeekMetrics.TOUCH_DOWN_TO_TIMER, (timerFiredTime - touchDownTime) / NANOS_PER_MILLI);
+        if (timerFiredTime != 0)
+            metrics.set(PeekMetrics.TIMER_TO_PEEK, (peekTime - timerFiredTime) / NANOS_PER_MILLI);
+        touchDownTime = 0;
+        timerFiredTime = 0;
+        blurMillis = 0;
+        peekFrames = 0;
+        firstFrameRecorded = false;
+        startPhase(PHASE_PEEK);
+    }
+
+    void onBlur(long startTime, long endTime) {
+        if (phase == PHASE_PEEK) {
+            blurMillis += (endTime - startTime) / NANOS_PER_MILLI;
+            metrics.set(PeekMetrics.BLUR, blurMillis);
+        }
+    }
+
+    void onPeekAnimationEnd() {
+        if (phase == PHASE_PEEK)
+            endPeekPhase();
+        phase = PHASE_PEEKED;
+    }
+
+    void onPop() {
+        if (phase == PHASE_PEEK)
+            endPeekPhase();
+        if (phase != PHASE_NONE)
+            startPhase(PHASE_POP);
+    }
+
+    void onPopAnimationEnd() {
+        if (phase == PHASE_POP)
+            finishGesture();
+    }
+
+    private void startPhase(int phase) {
+        this.phase = phase;
+        lastFrameTime = 0;
+        frames = 0;
+        droppedFrames = 0;
+        if (frameMonitor != null)
+            frameMonitor.start();
+    }
+
+    private void endPeekPhase() {
+        if (frameMonitor != null)
+            metrics.set(PeekMetrics.PEEK_DROPPED_FRAMES, droppedFrames);
+        peekFrames = frames;
+    }
+
+    private void finishGesture() {
+        if (phase == PHASE_POP && frameMonitor != null)
+            metrics.set(PeekMetrics.POP_DROPPED_FRAMES, droppedFrames);
+        metrics.setFrames(peekFrames, phase == PHASE_POP ? frames : 0);
+        phase = PHASE_NONE;
+        if (frameMonitor != null)
+            frameMonitor.stop();
+
+        for (int i = 0; i < histograms.length; i++) {
+            float value = metrics.get(i);
+            if (!Float.isNaN(value))
+                histograms[i].record(value);
+        }
+        if (listener != null)
+            listener.onPeekMetrics(metrics);
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        if (!firstFrameRecorded) {
+            firstFrameRecorded = true;
+            metrics.set(PeekMetrics.FIRST_FRAME, (System.nanoTime() - peekTime) / NANOS_PER_MILLI);
+        }
+        if (lastFrameTime != 0) {
+            long missed = Math.round((double) (frameTimeNanos - lastFrameTime) / frameIntervalNanos) - 1;
+            if (missed > 0)
+                droppedFrames += missed;
+        }
+        lastFrameTime = frameTimeNanos;
+        frames++;
+    }
+
+    /**
+     * @return the histogram of every gesture's value for the metric
+     */
+    @NonNull
+    public Histogram getHistogram(@PeekMetrics.Metrics int metric) {
+        return histograms[metric];
+    }
+
+    public void resetHistograms() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].reset();
+        }
+    }
+
+    /**
+     * Print every histogram, e.g. from an Activity's dump() for adb shell dumpsys activity.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        for (int i = 0; i < histograms.length; i++) {
+            writer.print(PeekMetrics.getName(i));
+            writer.print(": ");
+            writer.println(histograms[i]);
+        }
+        writer.flush();
+    }
+
+    public void release() {
+        phase = PHASE_NONE;
+        if (frameMonitor != null)
+            frameMonitor.stop();
+    }
+
+    @TargetApi(16)
+    private class FrameMonitor implements Choreographer.FrameCallback {
+
+        private boolean running;
+
+        void start() {
+            if (!running) {
+                running = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void stop() {
+            if (running) {
+                running = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running)
+                return;
+            if (phase == PHASE_PEEK || phase == PHASE_POP) {
+                onFrame(frameTimeNanos);
+                Choreographer.getInstance().postFrameCallback(this);
+            } else {
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Counts of a metric's values in fixed, roughly doubling buckets.
+     */
+    public static class Histogram {
+
+        private static final float[] BUCKET_BOUNDS = {1, 2, 4, 8, 16, 33, 50, 100, 200, 500, 1000};
+
+        private final int[] counts = new int[BUCKET_BOUNDS.length + 1];
+        private int count;
+        private double sum;
+        private float max;
+
+        void record(float value) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            count++;
+            sum += value;
+            if (count == 1 || value > max)
+                max = value;
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = 0;
+            }
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public float getMean() {
+            return count == 0 ? Float.NaN : (float) (sum / count);
+        }
+
+        public float getMax() {
+            return count == 0 ? Float.NaN : max;
+        }
+
+        /**
+         * @param percentile percentile between 0 and 100
+         * @return the upper bound of the bucket the percentile falls in, or the max value if it
+         * falls in the last bucket
+         */
+        public float getPercentile(float percentile) {
+            if (count == 0)
+                return Float.NaN;
+            int target = (int) Math.ceil(count * percentile / 100f);
+            int seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                seen += counts[i];
+                if (seen >= target)
+                    return Math.min(BUCKET_BOUNDS[i], max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("count=").append(count)
+                    .append(" mean=").append(getMean())
+                    .append(" p50=").append(getPercentile(50))
+                    .append(" p90=").append(getPercentile(90))
+                    .append(" p99=").append(getPercentile(99))
+                    .append(" max=").append(getMax())
+                    .append(" buckets=[");
+            for (int i = 0; i < counts.length; i++) {
+                if (i > 0)
+                    builder.append(", ");
+                builder.append(i < BUCKET_BOUNDS.length ? "<=" + BUCKET_BOUNDS[i] : ">" + BUCKET_BOUNDS[i - 1])
+                        .append(':').append(counts[i]);
+            }
+            return builder.append(']').toString();
+        }
+    }
+}
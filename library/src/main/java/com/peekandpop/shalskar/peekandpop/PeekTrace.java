@@ -0,0 +1,34 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.os.Build;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+
+/**
+ * Wraps the hot sections of the library in {@link Trace} sections so they show up in systrace
+ * and Perfetto, requires API 18 and above.
+ * <p/>
+ * Tracing is per PeekAndPop instance, turned on with {@link PeekAndPop.Builder#tracing(boolean)}.
+ * Callers check their own tracing flag before beginning and ending a section, and read it once
+ * per section so the section always stays balanced.
+ */
+public final class PeekTrace {
+
+    private PeekTrace() {
+    }
+
+    /**
+     * Begin a section, must be ended with {@link #endSection()} on the same thread.
+     *
+     * @param sectionName name of the section, should be a constant so tracing doesn't allocate
+     */
+    public static void beginSection(@NonNull String sectionName) {
+        if (Build.VERSION.SDK_INT >= 18)
+            Trace.beginSection(sectionName);
+    }
+
+    public static void endSection() {
+        if (Build.VERSION.SDK_INT >= 18)
+            Trace.endSection();
+    }
+}
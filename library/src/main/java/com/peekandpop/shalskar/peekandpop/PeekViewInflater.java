@@ -0,0 +1,123 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Inflates the peek background and peek layout on a background thread once the UI thread is
+ * idle, keeping the inflation off the Activity's startup path.
+ * <p/>
+ * Not every view can be inflated off the UI thread, if inflating fails the callback receives
+ * null views and the caller should inflate them on the UI thread instead. The inflate thread is a
+ * plain thread without a looper, so views which create a Handler while inflating fail and are
+ * inflated on the UI thread rather than binding to a background looper.
+ */
+class PeekViewInflater {
+
+    interface Callback {
+        /**
+         * Called on the UI thread once inflation has finished.
+         *
+         * @param peekLayout the inflated peek background, or null if inflating failed
+         * @param peekView   the inflated peek view, or null if inflating failed
+         */
+        void onInflated(@Nullable ViewGroup peekLayout, @Nullable View peekView);
+    }
+
+    private final LayoutInflater inflater;
+    private final ViewGroup contentView;
+    private final int peekLayoutId;
+    private final Callback callback;
+    private final Handler mainHandler;
+
+    private Thread inflateThread;
+    private boolean idleHandlerAdded;
+    private volatile boolean cancelled;
+
+    private ViewGroup inflatedPeekLayout;
+    private View inflatedPeekView;
+
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            idleHandlerAdded = false;
+            if (!cancelled) {
+                inflateThread = new Thread(inflateRunnable, "PeekAndPop-Inflate");
+                inflateThread.start();
+            }
+            return false;
+        }
+    };
+
+    private final Runnable inflateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                ViewGroup peekLayout = (ViewGroup) inflater.inflate(R.layout.peek_background, contentView, false);
+                inflatedPeekView = inflater.inflate(peekLayoutId, peekLayout, false);
+                inflatedPeekLayout = peekLayout;
+            } catch (RuntimeException e) {
+                inflatedPeekLayout = null;
+                inflatedPeekView = null;
+            }
+            mainHandler.post(deliverRunnable);
+        }
+    };
+
+    private final Runnable deliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inflateThread = null;
+            ViewGroup peekLayout = inflatedPeekLayout;
+            View peekView = inflatedPeekView;
+            inflatedPeekLayout = null;
+            inflatedPeekView = null;
+            if (!cancelled)
+                callback.onInflated(peekLayout, peekView);
+        }
+    };
+
+    PeekViewInflater(@NonNull Context context, @NonNull ViewGroup contentView, @LayoutRes int peekLayoutId,
+                     @NonNull Callback callback) {
+        // A separate inflater instance, the context's inflater isn't safe to use from two threads
+        this.inflater = LayoutInflater.from(context).cloneInContext(context);
+        this.contentView = contentView;
+        this.peekLayoutId = peekLayoutId;
+        this.callback = callback;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Start inflating the next time the UI thread is idle, must be called from the UI thread.
+     */
+    void inflateWhenIdle() {
+        if (inflateThread != null) {
+            // Still inflating, let the running inflation deliver its views
+            cancelled = false;
+        } else if (!idleHandlerAdded) {
+            cancelled = false;
+            idleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    }
+
+    /**
+     * Stop any pending inflation, the callback won't be called. A thread which is already
+     * inflating can't be interrupted, it finishes and its views are dropped.
+     */
+    void cancel() {
+        cancelled = true;
+        if (idleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(idleHandler);
+            idleHandlerAdded = false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.content.ComponentCallbacks2;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.NonNull;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small pool of inflated peek views, one per peek view type.
+ * <p/>
+ * Peek views are inflated the first time their type is used and kept for reuse. When more than
+ * maxSize types have been inflated, the least recently used peek view is evicted. Peek views that
+ * aren't showing are also evicted when memory is low, see {@link #onTrimMemory(int)}.
+ */
+public class PeekViewPool {
+
+    public static final int DEFAULT_MAX_SIZE = 2;
+
+    private final SparseIntArray layoutIds;
+    private final LinkedHashMap<Integer, View> peekViews;
+    private int maxSize;
+    private int firstViewType;
+
+    public PeekViewPool(int maxSize) {
+        this.layoutIds = new SparseIntArray();
+        this.peekViews = new LinkedHashMap<>(4, 0.75f, true);
+        setMaxSize(maxSize);
+    }
+
+    public void registerLayout(int viewType, @LayoutRes int layoutId) {
+        if (layoutIds.size() == 0)
+            firstViewType = viewType;
+        if (layoutIds.get(viewType, -1) != layoutId) {
+            layoutIds.put(viewType, layoutId);
+            peekViews.remove(viewType);
+        }
+    }
+
+    public boolean hasLayout(int viewType) {
+        return layoutIds.indexOfKey(viewType) >= 0;
+    }
+
+    /**
+     * @return the view type of the layout registered first, not the smallest view type
+     */
+    public int getFirstViewType() {
+        if (layoutIds.size() == 0)
+            throw new IllegalStateException("No peek layouts registered.");
+        return firstViewType;
+    }
+
+    public int getLayoutCount() {
+        return layoutIds.size();
+    }
+
+    /**
+     * Get the pooled peek view for the view type, inflating it if it isn't pooled.
+     *
+     * @param inflater inflater to inflate the peek layout with
+     * @param parent   the view group the peek view will be added to, used for its layout params
+     * @param viewType the peek view type
+     * @return the peek view, not attached to the parent
+     */
+    public View obtain(@NonNull LayoutInflater inflater, @NonNull ViewGroup parent, int viewType) {
+        View peekView = peekViews.get(viewType);
+        if (peekView == null) {
+            int layoutId = layoutIds.get(viewType, -1);
+            if (layoutId == -1)
+                throw new IllegalArgumentException("No peek layout registered for view type " + viewType + ".");
+            peekView = inflater.inflate(layoutId, parent, false);
+            // Evict before adding, so the view being obtained is never the one evicted
+            trimToSize(maxSize - 1);
+            peekViews.put(viewType, peekView);
+        }
+        return peekView;
+    }
+
+    /**
+     * Add an already inflated peek view to the pool, replacing any pooled peek view of the view type.
+     */
+    public void put(int viewType, @NonNull View peekView) {
+        if (!hasLayout(viewType))
+            throw new IllegalArgumentException("No peek layout registered for view type " + viewType + ".");
+        if (!peekViews.containsKey(viewType))
+            trimToSize(maxSize - 1);
+        peekViews.put(viewType, peekView);
+    }
+
+    /**
+     * @return the pooled peek view for the view type, or null if it hasn't been inflated
+     */
+    public View get(int viewType) {
+        return peekViews.get(viewType);
+    }
+
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Peek view pool size must be at least 1.");
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return peekViews.size();
+    }
+
+    /**
+     * Evict the least recently used peek views, keeping any that are attached to a parent. The
+     * pool can hold more than the size while the attached views can't be evicted.
+     */
+    private void trimToSize(int size) {
+        Iterator<Map.Entry<Integer, View>> iterator = peekViews.entrySet().iterator();
+        while (peekViews.size() > size && iterator.hasNext()) {
+            View peekView = iterator.next().getValue();
+            if (peekView.getParent() == null)
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Evict pooled peek views depending on how low memory is.
+     *
+     * @param level the trim level from {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            trimToSize(0);
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            trimToSize(1);
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.support.annotation.NonNull;
+
+/**
+ * Blur engine using the RenderScript blur intrinsic, requires API 17 and above.
+ * <p/>
+ * The RenderScript context, intrinsic and allocations are kept for as long as the same
+ * bitmaps are being blurred. Allocations are kept for a few pairs of bitmaps, so the tiles of a
+ * region of interest blur don't reallocate them on every blur.
+ * <p/>
+ * ARGB_8888 bitmaps are blurred as U8_4 and ALPHA_8 bitmaps as single channel U8 elements, other
+ * configs aren't supported by the intrinsic.
+ */
+@TargetApi(17)
+public class RenderScriptBlurEngine implements BlurEngine {
+
+    private static final float MAX_RADIUS = 25f;
+    // The whole bitmap plus up to four tiles around the peek view
+    private static final int MAX_ALLOCATION_PAIRS = 5;
+
+    private final Context context;
+
+    private RenderScript renderScript;
+    private ScriptIntrinsicBlur blurScript;
+    private boolean singleChannelScript;
+    private final AllocationPair[] allocationPairs = new AllocationPair[MAX_ALLOCATION_PAIRS];
+    private int useCount;
+
+    public RenderScriptBlurEngine(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public void blur(@NonNull Bitmap input, @NonNull Bitmap output, float radius) {
+        boolean singleChannel = input.getConfig() == Bitmap.Config.ALPHA_8;
+        if (renderScript == null)
+            renderScript = RenderScript.create(context);
+        if (blurScript == null || singleChannelScript != singleChannel) {
+            if (blurScript != null)
+                blurScript.destroy();
+            blurScript = ScriptIntrinsicBlur.create(renderScript,
+                    singleChannel ? Element.U8(renderScript) : Element.U8_4(renderScript));
+            singleChannelScript = singleChannel;
+        }
+        AllocationPair pair = getAllocationPair(input, output);
+
+        pair.input.copyFrom(input);
+        blurScript.setRadius(Math.max(Float.MIN_VALUE, Math.min(radius, MAX_RADIUS)));
+        blurScript.setInput(pair.input);
+        blurScript.forEach(pair.output);
+        pair.output.copyTo(output);
+    }
+
+    /**
+     * Find the allocations for the bitmaps, or create them in place of the least recently used.
+     */
+    private AllocationPair getAllocationPair(Bitmap input, Bitmap output) {
+        int leastRecentlyUsed = 0;
+        for (int i = 0; i < allocationPairs.length; i++) {
+            AllocationPair pair = allocationPairs[i];
+            if (pair == null) {
+                leastRecentlyUsed = i;
+                break;
+            }
+            if (pair.matches(input, output)) {
+                pair.lastUse = ++useCount;
+                return pair;
+            }
+            if (pair.lastUse < allocationPairs[leastRecentlyUsed].lastUse)
+                leastRecentlyUsed = i;
+        }
+
+        if (allocationPairs[leastRecentlyUsed] != null)
+            allocationPairs[leastRecentlyUsed].destroy();
+        AllocationPair pair = new AllocationPair(renderScript, input, output);
+        pair.lastUse = ++useCount;
+        allocationPairs[leastRecentlyUsed] = pair;
+        return pair;
+    }
+
+    private void releaseAllocations() {
+        for (int i = 0; i < allocationPairs.length; i++) {
+            if (allocationPairs[i] != null) {
+                allocationPairs[i].destroy();
+                allocationPairs[i] = null;
+            }
+        }
+    }
+
+    @Override
+    public void release() {
+        releaseAllocations();
+        if (blurScript != null) {
+            blurScript.destroy();
+            blurScript = null;
+        }
+        if (renderScript != null) {
+            renderScript.destroy();
+            renderScript = null;
+        }
+    }
+
+    private static class AllocationPair {
+
+        final Allocation input;
+        final Allocation output;
+        final Bitmap inputBitmap;
+        final Bitmap outputBitmap;
+        // Pooled bitmaps can be reconfigured, so the size and config are checked as well
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        int lastUse;
+
+        AllocationPair(RenderScript renderScript, Bitmap input, Bitmap output) {
+            this.input = Allocation.createFromBitmap(renderScript, input);
+            this.output = Allocation.createFromBitmap(renderScript, output);
+            this.inputBitmap = input;
+            this.outputBitmap = output;
+            this.width = input.getWidth();
+            this.height = input.getHeight();
+            this.config = input.getConfig();
+        }
+
+        boolean matches(Bitmap input, Bitmap output) {
+            return input == inputBitmap && output == outputBitmap && input.getWidth() == width
+                    && input.getHeight() == height && input.getConfig() == config;
+        }
+
+        void destroy() {
+            input.destroy();
+            output.destroy();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+/**
+ * Animates a single value with a damped spring, stepped on every frame.
+ * <p/>
+ * Unlike a fixed duration animator, the spring keeps its current value and velocity when it is
+ * given a new target, so interrupted gestures continue smoothly instead of jumping. Nothing is
+ * allocated when the spring is retargeted or restarted.
+ * <p/>
+ * Frames are driven by the Choreographer on API 16 and above, and by a Handler below that.
+ * Must only be used from the UI thread.
+ */
+public class SpringAnimator {
+
+    public interface OnSpringUpdateListener {
+        void onSpringUpdate(@NonNull SpringAnimator spring, float value);
+
+        /**
+         * Called once the spring has settled at its target, or has been cancelled.
+         */
+        void onSpringEnd(@NonNull SpringAnimator spring, boolean cancelled);
+    }
+
+    public static final float DEFAULT_STIFFNESS = 400f;
+    public static final float DEFAULT_DAMPING_RATIO = 0.8f;
+
+    // The spring is integrated in fixed steps so it stays stable at any frame rate
+    private static final float STEP_SECONDS = 0.004f;
+    private static final float MAX_FRAME_SECONDS = 0.064f;
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private final OnSpringUpdateListener listener;
+    private final float restThreshold;
+    private final FrameDriver frameDriver;
+
+    private float stiffness = DEFAULT_STIFFNESS;
+    private float dampingRatio = DEFAULT_DAMPING_RATIO;
+    private float value;
+    private float velocity;
+    private float target;
+    private boolean running;
+    private long lastFrameTimeNanos;
+
+    /**
+     * @param restThreshold how close to the target the value has to be, and how slow it has to be
+     *                      moving per frame, for the spring to be considered at rest
+     */
+    public SpringAnimator(float restThreshold, @NonNull OnSpringUpdateListener listener) {
+        this.restThreshold = restThreshold;
+        this.listener = listener;
+        this.frameDriver = Build.VERSION.SDK_INT >= 16 ? new ChoreographerFrameDriver() : new HandlerFrameDriver();
+    }
+
+    /**
+     * @param stiffness    spring stiffness, higher is faster
+     * @param dampingRatio 1 settles without overshooting, lower values bounce
+     */
+    public void setSpring(float stiffness, float dampingRatio) {
+        if (stiffness <= 0 || dampingRatio < 0)
+            throw new IllegalArgumentException("Stiffness must be positive and damping ratio not negative.");
+        this.stiffness = stiffness;
+        this.dampingRatio = dampingRatio;
+    }
+
+    /**
+     * Set the value and velocity the spring moves from, only used while the spring isn't running,
+     * a running spring continues from where it is.
+     *
+     * @param velocity velocity in units per second
+     */
+    public void setStartValue(float value, float velocity) {
+        if (!running) {
+            this.value = value;
+            this.velocity = velocity;
+        }
+    }
+
+    /**
+     * Add to the spring's current velocity, e.g. from a fling.
+     *
+     * @param velocity velocity in units per second
+     */
+    public void addVelocity(float velocity) {
+        this.velocity += velocity;
+    }
+
+    /**
+     * Move the spring towards the target, starting it if it isn't running.
+     */
+    public void animateTo(float target) {
+        this.target = target;
+        if (!running) {
+            running = true;
+            lastFrameTimeNanos = 0;
+            frameDriver.postFrame();
+        }
+    }
+
+    /**
+     * Stop the spring where it is.
+     */
+    public void cancel() {
+        if (running) {
+            running = false;
+            velocity = 0;
+            frameDriver.removeFrame();
+            listener.onSpringEnd(this, true);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public float getVelocity() {
+        return velocity;
+    }
+
+    public float getTarget() {
+        return target;
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        if (!running)
+            return;
+
+        float frameSeconds = lastFrameTimeNanos == 0 ? 1 / 60f
+                : Math.min(MAX_FRAME_SECONDS, (frameTimeNanos - lastFrameTimeNanos) / 1e9f);
+        lastFrameTimeNanos = frameTimeNanos;
+        step(frameSeconds);
+
+        if (Math.abs(value - target) < restThreshold && Math.abs(velocity) * frameSeconds < restThreshold) {
+            value = target;
+            velocity = 0;
+            running = false;
+            listener.onSpringUpdate(this, value);
+            listener.onSpringEnd(this, false);
+        } else {
+            listener.onSpringUpdate(this, value);
+            if (running)
+                frameDriver.postFrame();
+        }
+    }
+
+    /**
+     * Integrate a unit mass spring with semi-implicit Euler steps.
+     */
+    private void step(float seconds) {
+        float damping = 2 * dampingRatio * (float) Math.sqrt(stiffness);
+        while (seconds > 0) {
+            float h = Math.min(STEP_SECONDS, seconds);
+            float acceleration = -stiffness * (value - target) - damping * velocity;
+            velocity += acceleration * h;
+            value += velocity * h;
+            seconds -= h;
+        }
+    }
+
+    private interface FrameDriver {
+        void postFrame();
+
+        void removeFrame();
+    }
+
+    @TargetApi(16)
+    private class ChoreographerFrameDriver implements FrameDriver, Choreographer.FrameCallback {
+
+        @Override
+        public void postFrame() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void removeFrame() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            SpringAnimator.this.doFrame(frameTimeNanos);
+        }
+    }
+
+    private class HandlerFrameDriver implements FrameDriver, Runnable {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void postFrame() {
+            handler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+
+        @Override
+        public void removeFrame() {
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            doFrame(SystemClock.uptimeMillis() * 1000000L);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pure Java blur engine, works on every API level.
+ * <p/>
+ * Uses a stack blur (a triangle shaped kernel, close to a gaussian blur) on an int[] pixel buffer.
+ * The horizontal and vertical passes are split into blocks of lines which are blurred in parallel
+ * on a small thread pool shared by all engines.
+ */
+public class StackBlurEngine implements BlurEngine {
+
+    private static final int MAX_PARALLELISM = 4;
+    private static final int MIN_LINES_PER_TASK = 16;
+    private static final long THREAD_KEEP_ALIVE = 30;
+
+    private static ThreadPoolExecutor executor;
+
+    private final int parallelism;
+    private final LineTask[] tasks;
+
+    private int[] pixels;
+    private int[] buffer;
+
+    public StackBlurEngine() {
+        this(Math.min(Runtime.getRuntime().availableProcessors(), MAX_PARALLELISM));
+    }
+
+    /**
+     * @param parallelism maximum number of threads a single blur is split across, including
+     *                    the calling thread
+     */
+    public StackBlurEngine(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.tasks = new LineTask[this.parallelism];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new LineTask();
+        }
+    }
+
+    @Override
+    public void blur(@NonNull Bitmap input, @NonNull Bitmap output, float radius) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        if (pixels == null || pixels.length < width * height)
+            pixels = new int[width * height];
+
+        input.getPixels(pixels, 0, width, 0, 0, width, height);
+        blur(pixels, width, height, Math.round(radius));
+        output.setPixels(pixels, 0, width, 0, 0, width, height);
+    }
+
+    /**
+     * Blur the ARGB pixels in place.
+     *
+     * @param pixels pixels of the image, row by row
+     * @param width  width of the image
+     * @param height height of the image
+     * @param radius blur radius in pixels, anything below 1 leaves the image as is
+     */
+    public void blur(@NonNull int[] pixels, int width, int height, int radius) {
+        if (pixels.length < width * height)
+            throw new IllegalArgumentException("Not enough pixels for a " + width + "x" + height + " image.");
+        if (radius < 1 || width <= 0 || height <= 0)
+            return;
+
+        if (buffer == null || buffer.length < width * height)
+            buffer = new int[width * height];
+
+        // Rows into the buffer, then columns back into the pixels
+        runPass(pixels, buffer, width, height, radius, true);
+        runPass(buffer, pixels, width, height, radius, false);
+    }
+
+    @Override
+    public void release() {
+        pixels = null;
+        buffer = null;
+    }
+
+    private void runPass(int[] src, int[] dst, int width, int height, int radius, boolean horizontal) {
+        int lines = horizontal ? height : width;
+        int taskCount = Math.max(1, Math.min(parallelism, lines / MIN_LINES_PER_TASK));
+        int linesPerTask = (lines + taskCount - 1) / taskCount;
+
+        CountDownLatch latch = taskCount > 1 ? new CountDownLatch(taskCount - 1) : null;
+        for (int i = taskCount - 1; i >= 0; i--) {
+            int firstLine = i * linesPerTask;
+            int lastLine = Math.min(lines, firstLine + linesPerTask);
+            tasks[i].set(src, dst, width, height, radius, horizontal, firstLine, lastLine, i == 0 ? null : latch);
+            if (i == 0)
+                tasks[i].run();
+            else
+                getExecutor().execute(tasks[i]);
+        }
+
+        if (latch != null)
+            awaitUninterruptibly(latch);
+
+        for (int i = 0; i < taskCount; i++) {
+            RuntimeException error = tasks[i].error;
+            tasks[i].clear();
+            if (error != null)
+                throw error;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(MAX_PARALLELISM, MAX_PARALLELISM, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PeekAndPop-StackBlur");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Blur one line of pixels with a stack blur.
+     * <p/>
+     * Every output pixel is the weighted sum of the pixels within the radius, weighted
+     * (radius + 1 - distance). The sum is updated as the kernel slides along the line: the pixels
+     * at or behind the centre lose one weight and the pixels ahead of it gain one.
+     *
+     * @param src    source pixels
+     * @param dst    destination pixels
+     * @param offset index of the first pixel of the line
+     * @param step   distance between pixels of the line
+     * @param length number of pixels in the line
+     * @param radius blur radius
+     */
+    static void blurLine(int[] src, int[] dst, int offset, int step, int length, int radius) {
+        int divisor = (radius + 1) * (radius + 1);
+        int half = divisor / 2;
+        int last = length - 1;
+
+        int sumA = 0, sumR = 0, sumG = 0, sumB = 0;
+        int outA = 0, outR = 0, outG = 0, outB = 0;
+        int inA = 0, inR = 0, inG = 0, inB = 0;
+
+        for (int k = -radius; k <= radius; k++) {
+            int color = src[offset + clamp(k, last) * step];
+            int weight = radius + 1 - Math.abs(k);
+            sumA += (color >>> 24) * weight;
+            sumR += ((color >> 16) & 0xff) * weight;
+            sumG += ((color >> 8) & 0xff) * weight;
+            sumB += (color & 0xff) * weight;
+            if (k <= 0) {
+                outA += color >>> 24;
+                outR += (color >> 16) & 0xff;
+                outG += (color >> 8) & 0xff;
+                outB += color & 0xff;
+            }
+        }
+        for (int k = 1; k <= radius + 1; k++) {
+            int color = src[offset + clamp(k, last) * step];
+            inA += color >>> 24;
+            inR += (color >> 16) & 0xff;
+            inG += (color >> 8) & 0xff;
+            inB += color & 0xff;
+        }
+
+        for (int i = 0; i < length; i++) {
+            dst[offset + i * step] = ((sumA + half) / divisor) << 24
+                    | ((sumR + half) / divisor) << 16
+                    | ((sumG + half) / divisor) << 8
+                    | ((sumB + half) / divisor);
+
+            sumA += inA - outA;
+            sumR += inR - outR;
+            sumG += inG - outG;
+            sumB += inB - outB;
+
+            int leaving = src[offset + clamp(i - radius, last) * step];
+            int centre = src[offset + clamp(i + 1, last) * step];
+            int entering = src[offset + clamp(i + radius + 2, last) * step];
+
+            outA += (centre >>> 24) - (leaving >>> 24);
+            outR += ((centre >> 16) & 0xff) - ((leaving >> 16) & 0xff);
+            outG += ((centre >> 8) & 0xff) - ((leaving >> 8) & 0xff);
+            outB += (centre & 0xff) - (leaving & 0xff);
+
+            inA += (entering >>> 24) - (centre >>> 24);
+            inR += ((entering >> 16) & 0xff) - ((centre >> 16) & 0xff);
+            inG += ((entering >> 8) & 0xff) - ((centre >> 8) & 0xff);
+            inB += (entering & 0xff) - (centre & 0xff);
+        }
+    }
+
+    private static int clamp(int index, int last) {
+        return index < 0 ? 0 : (index > last ? last : index);
+    }
+
+    /**
+     * Blurs a block of rows or columns, reused between passes.
+     */
+    private static class LineTask implements Runnable {
+
+        private int[] src;
+        private int[] dst;
+        private int width, height, radius;
+        private boolean horizontal;
+        private int firstLine, lastLine;
+        private CountDownLatch latch;
+        private RuntimeException error;
+
+        void set(int[] src, int[] dst, int width, int height, int radius, boolean horizontal,
+                 int firstLine, int lastLine, CountDownLatch latch) {
+            this.src = src;
+            this.dst = dst;
+            this.width = width;
+            this.height = height;
+            this.radius = radius;
+            this.horizontal = horizontal;
+            this.firstLine = firstLine;
+            this.lastLine = lastLine;
+            this.latch = latch;
+            this.error = null;
+        }
+
+        void clear() {
+            src = null;
+            dst = null;
+            latch = null;
+            error = null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int line = firstLine; line < lastLine; line++) {
+                    if (horizontal)
+                        blurLine(src, dst, line * width, 1, width, radius);
+                    else
+                        blurLine(src, dst, line, width, height, radius);
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                if (latch != null)
+                    latch.countDown();
+            }
+        }
+    }
+}
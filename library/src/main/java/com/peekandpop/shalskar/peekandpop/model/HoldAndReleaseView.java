@@ -1,12 +1,14 @@
 package com.peekandpop.shalskar.peekandpop.model;
 
+import android.os.SystemClock;
+import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
 import android.view.View;
 
+import com.peekandpop.shalskar.peekandpop.GestureScheduler;
 import com.peekandpop.shalskar.peekandpop.PeekAndPop;
 
 import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Created by Vincent on 9/01/2016.
@@ -14,30 +16,91 @@ import java.util.TimerTask;
 public class HoldAndReleaseView {
 
     private View view;
+    private int viewId = View.NO_ID;
 
     private int position;
 
+    private GestureScheduler.Token holdAndReleaseToken;
+
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     protected Timer holdAndReleaseTimer;
 
+    private boolean holdAndReleaseTimerStarted;
+
+    private PeekAndPop peekAndPop;
+    private long duration;
+    private long startTime;
+
     public HoldAndReleaseView(View view) {
         this.view = view;
         this.position = -1;
-        this.holdAndReleaseTimer = new Timer();
+    }
+
+    /**
+     * @param viewId id of the view within the peek layout, used to find the view again when a
+     *               different peek layout is shown
+     */
+    public HoldAndReleaseView(@IdRes int viewId, View view) {
+        this(view);
+        this.viewId = viewId;
     }
 
     public void startHoldAndReleaseTimer(@NonNull final PeekAndPop peekAndPop, final int position, long duration) {
-        final Timer holdAndReleaseTimer = new Timer();
+        startHoldAndReleaseTimer(peekAndPop, position, duration, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Same as {@link #startHoldAndReleaseTimer(PeekAndPop, int, long)}, but for a touch that entered
+     * the view at an earlier time, the timer is shortened by the time that has passed since.
+     *
+     * @param startTime the time the view was entered, in the {@link SystemClock#uptimeMillis()} time base
+     */
+    public void startHoldAndReleaseTimer(@NonNull final PeekAndPop peekAndPop, final int position, long duration, long startTime) {
+        if (holdAndReleaseToken == null || this.peekAndPop != peekAndPop) {
+            holdAndReleaseToken = new GestureScheduler.Token(peekAndPop.getGestureScheduler(), "HoldAndReleaseView.timer") {
+                @Override
+                protected void onRun() {
+                    HoldAndReleaseView.this.peekAndPop.setCurrentHoldAndReleaseView(HoldAndReleaseView.this);
+                    HoldAndReleaseView.this.peekAndPop.triggerOnHoldEvent(view, HoldAndReleaseView.this.position);
+                }
+            };
+        }
+        this.peekAndPop = peekAndPop;
         this.position = position;
+        this.duration = duration;
+        this.startTime = startTime;
+        this.holdAndReleaseTimerStarted = true;
 
-        holdAndReleaseTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                peekAndPop.setCurrentHoldAndReleaseView(HoldAndReleaseView.this);
-                peekAndPop.triggerOnHoldEvent(view, position);
-            }
-        }, duration);
+        holdAndReleaseToken.schedule(Math.max(0, startTime + duration - SystemClock.uptimeMillis()));
+    }
 
-        this.holdAndReleaseTimer = holdAndReleaseTimer;
+    /**
+     * If the view had been held for the hold duration by the time of the touch sample,
+     * send the hold event now instead of waiting for the timer.
+     *
+     * @param sampleTime time of the touch sample, in the {@link SystemClock#uptimeMillis()} time base
+     */
+    public void fireHoldAndReleaseTimerIfDue(long sampleTime) {
+        if (holdAndReleaseToken != null && holdAndReleaseToken.isPending() && sampleTime - startTime >= duration) {
+            holdAndReleaseToken.cancel();
+            holdAndReleaseToken.run();
+        }
+    }
+
+    /**
+     * Cancel the hold and release timer, the view will need to be entered again to restart it.
+     */
+    public void cancelHoldAndReleaseTimer() {
+        if (holdAndReleaseToken != null)
+            holdAndReleaseToken.cancel();
+        holdAndReleaseTimerStarted = false;
+    }
+
+    public boolean isHoldAndReleaseTimerStarted() {
+        return holdAndReleaseTimerStarted;
     }
 
     public int getPosition() {
@@ -56,10 +119,22 @@ public class HoldAndReleaseView {
         this.view = view;
     }
 
+    public int getViewId() {
+        return viewId;
+    }
+
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     public Timer getHoldAndReleaseTimer() {
         return holdAndReleaseTimer;
     }
 
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     public void setHoldAndReleaseTimer(Timer holdAndReleaseTimer) {
         this.holdAndReleaseTimer = holdAndReleaseTimer;
     }
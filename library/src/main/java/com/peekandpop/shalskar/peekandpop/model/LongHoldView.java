@@ -1,12 +1,14 @@
 package com.peekandpop.shalskar.peekandpop.model;
 
+import android.os.SystemClock;
+import android.support.annotation.IdRes;
 import android.support.annotation.NonNull;
 import android.view.View;
 
+import com.peekandpop.shalskar.peekandpop.GestureScheduler;
 import com.peekandpop.shalskar.peekandpop.PeekAndPop;
 
 import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Created by Vincent on 9/01/2016.
@@ -14,16 +16,39 @@ import java.util.TimerTask;
 public class LongHoldView {
 
     private View view;
+    private int viewId = View.NO_ID;
 
+    private GestureScheduler.Token longHoldToken;
+
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     protected Timer longHoldTimer;
 
+    private boolean longHoldTimerStarted;
+
     private boolean receiveMultipleEvents;
 
+    private PeekAndPop peekAndPop;
+    private int position;
+    private long duration;
+    private long startTime;
+
     public LongHoldView(View view, boolean receiveMultipleEvents) {
         this.view = view;
         this.receiveMultipleEvents = receiveMultipleEvents;
     }
 
+    /**
+     * @param viewId id of the view within the peek layout, used to find the view again when a
+     *               different peek layout is shown
+     */
+    public LongHoldView(@IdRes int viewId, View view, boolean receiveMultipleEvents) {
+        this(view, receiveMultipleEvents);
+        this.viewId = viewId;
+    }
+
     /**
      * Sets a timer on the long hold view that will send a long hold event after the duration
      * If receiveMultipleEvents is true, it will set another timer directly after for the duration * 1.5
@@ -32,18 +57,65 @@ public class LongHoldView {
      * @param duration
      */
     public void startLongHoldViewTimer(@NonNull final PeekAndPop peekAndPop, final int position, final long duration) {
-        final Timer longHoldTimer = new Timer();
-        longHoldTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                peekAndPop.sendOnLongHoldEvent(view, position);
-                if (receiveMultipleEvents) {
-                    startLongHoldViewTimer(peekAndPop, position, (long) (duration));
+        startLongHoldViewTimer(peekAndPop, position, duration, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Same as {@link #startLongHoldViewTimer(PeekAndPop, int, long)}, but for a touch that entered
+     * the view at an earlier time, the timer is shortened by the time that has passed since.
+     *
+     * @param startTime the time the view was entered, in the {@link SystemClock#uptimeMillis()} time base
+     */
+    public void startLongHoldViewTimer(@NonNull final PeekAndPop peekAndPop, final int position, final long duration, long startTime) {
+        if (longHoldToken == null || this.peekAndPop != peekAndPop) {
+            longHoldToken = new GestureScheduler.Token(peekAndPop.getGestureScheduler(), "LongHoldView.timer") {
+                @Override
+                protected void onRun() {
+                    LongHoldView.this.peekAndPop.sendOnLongHoldEvent(view, LongHoldView.this.position);
+                    if (receiveMultipleEvents) {
+                        LongHoldView.this.startTime += LongHoldView.this.duration;
+                        schedule(getRemainingTime());
+                    }
                 }
-            }
-        }, duration);
+            };
+        }
+        this.peekAndPop = peekAndPop;
+        this.position = position;
+        this.duration = duration;
+        this.startTime = startTime;
+        this.longHoldTimerStarted = true;
+
+        longHoldToken.schedule(getRemainingTime());
+    }
 
-        this.longHoldTimer = longHoldTimer;
+    private long getRemainingTime() {
+        return Math.max(0, startTime + duration - SystemClock.uptimeMillis());
+    }
+
+    /**
+     * If the view had been held for the long hold duration by the time of the touch sample,
+     * send the long hold event now instead of waiting for the timer.
+     *
+     * @param sampleTime time of the touch sample, in the {@link SystemClock#uptimeMillis()} time base
+     */
+    public void fireLongHoldTimerIfDue(long sampleTime) {
+        if (longHoldToken != null && longHoldToken.isPending() && sampleTime - startTime >= duration) {
+            longHoldToken.cancel();
+            longHoldToken.run();
+        }
+    }
+
+    /**
+     * Cancel the long hold timer, the view will need to be entered again to restart it.
+     */
+    public void cancelLongHoldTimer() {
+        if (longHoldToken != null)
+            longHoldToken.cancel();
+        longHoldTimerStarted = false;
+    }
+
+    public boolean isLongHoldTimerStarted() {
+        return longHoldTimerStarted;
     }
 
     public View getView() {
@@ -54,6 +126,10 @@ public class LongHoldView {
         this.view = view;
     }
 
+    public int getViewId() {
+        return viewId;
+    }
+
     public boolean isReceiveMultipleEvents() {
         return receiveMultipleEvents;
     }
@@ -62,10 +138,18 @@ public class LongHoldView {
         this.receiveMultipleEvents = receiveMultipleEvents;
     }
 
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     public Timer getLongHoldTimer() {
         return longHoldTimer;
     }
 
+    /**
+     * @deprecated the timer runs on the {@link PeekAndPop}'s gesture scheduler, this is no longer used
+     */
+    @Deprecated
     public void setLongHoldTimer(Timer longHoldTimer) {
         this.longHoldTimer = longHoldTimer;
     }
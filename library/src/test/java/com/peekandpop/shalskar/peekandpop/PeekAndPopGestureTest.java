@@ -0,0 +1,172 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PeekAndPopGestureTest {
+
+    private PeekAndPopTestHelper helper;
+    private PeekAndPop peekAndPop;
+
+    private int peeks, pops, longHolds, holds, leaves, releases;
+
+    @Before
+    public void setUp() throws Exception {
+        helper = new PeekAndPopTestHelper();
+        peekAndPop = helper.builder()
+                .onGeneralActionListener(new PeekAndPop.OnGeneralActionListener() {
+                    @Override
+                    public void onPeek(View longClickView, int position) {
+                        peeks++;
+                    }
+
+                    @Override
+                    public void onPop(View longClickView, int position) {
+                        pops++;
+                    }
+                })
+                .onLongHoldListener(new PeekAndPop.OnLongHoldListener() {
+                    @Override
+                    public void onEnter(View view, int position) {
+                    }
+
+                    @Override
+                    public void onLongHold(View view, int position) {
+                        longHolds++;
+                    }
+                })
+                .onHoldAndReleaseListener(new PeekAndPop.OnHoldAndReleaseListener() {
+                    @Override
+                    public void onHold(View view, int position) {
+                        holds++;
+                    }
+
+                    @Override
+                    public void onLeave(View view, int position) {
+                        leaves++;
+                    }
+
+                    @Override
+                    public void onRelease(View view, int position) {
+                        releases++;
+                    }
+                })
+                .build();
+        peekAndPop.addLongHoldView(android.R.id.text1, false);
+        peekAndPop.addHoldAndReleaseView(android.R.id.text2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        peekAndPop.destroy();
+        helper.tearDown();
+    }
+
+    @Test
+    public void longClick_peeksAfterLongClickDuration() throws Exception {
+        helper.down();
+        helper.idle(PeekAndPop.LONG_CLICK_DURATION - 1);
+        assertEquals(0, peeks);
+        assertEquals(PeekAndPop.STATE_IDLE, peekAndPop.getState());
+
+        helper.idle(1);
+        assertEquals(1, peeks);
+        assertEquals(PeekAndPop.STATE_PEEKING, peekAndPop.getState());
+
+        helper.layout();
+        helper.idle(PeekAndPop.ANIMATION_PEEK_DURATION + 50);
+        assertEquals(PeekAndPop.STATE_PEEKED, peekAndPop.getState());
+    }
+
+    @Test
+    public void releaseBeforeLongClickDuration_doesNotPeek() throws Exception {
+        helper.down();
+        helper.idle(PeekAndPop.LONG_CLICK_DURATION / 2);
+        helper.up();
+        helper.idle(PeekAndPop.LONG_CLICK_DURATION * 2);
+        assertEquals(0, peeks);
+        assertEquals(0, pops);
+        assertEquals(PeekAndPop.STATE_IDLE, peekAndPop.getState());
+    }
+
+    @Test
+    public void release_popsBackToIdle() throws Exception {
+        helper.peek();
+        helper.up();
+        assertEquals(1, pops);
+        assertEquals(PeekAndPop.STATE_POPPING, peekAndPop.getState());
+
+        helper.idle(PeekAndPop.ANIMATION_POP_DURATION + 50);
+        assertEquals(PeekAndPop.STATE_IDLE, peekAndPop.getState());
+        assertEquals(View.GONE, ((View) peekAndPop.getPeekView().getParent()).getVisibility());
+    }
+
+    @Test
+    public void longHoldView_firesAfterLongHoldDuration() throws Exception {
+        helper.peek();
+        int[] centre = PeekAndPopTestHelper.centreOf(peekAndPop.getPeekView().findViewById(android.R.id.text1));
+        helper.move(centre[0], centre[1]);
+
+        helper.idle(PeekAndPop.LONG_HOLD_DURATION - 1);
+        assertEquals(0, longHolds);
+        helper.idle(1);
+        assertEquals(1, longHolds);
+
+        // Only once unless the view is left and entered again
+        helper.idle(PeekAndPop.LONG_HOLD_DURATION * 2);
+        assertEquals(1, longHolds);
+    }
+
+    @Test
+    public void longHoldView_leavingCancelsTimer() throws Exception {
+        helper.peek();
+        int[] centre = PeekAndPopTestHelper.centreOf(peekAndPop.getPeekView().findViewById(android.R.id.text1));
+        helper.move(centre[0], centre[1]);
+        helper.idle(PeekAndPop.LONG_HOLD_DURATION / 2);
+        helper.move(0, 0);
+        helper.idle(PeekAndPop.LONG_HOLD_DURATION);
+        assertEquals(0, longHolds);
+    }
+
+    @Test
+    public void holdAndReleaseView_holdLeaveAndRelease() throws Exception {
+        helper.peek();
+        int[] centre = PeekAndPopTestHelper.centreOf(peekAndPop.getPeekView().findViewById(android.R.id.text2));
+        helper.move(centre[0], centre[1]);
+        helper.idle(PeekAndPop.HOLD_AND_RELEASE_DURATION - 1);
+        assertEquals(0, holds);
+        helper.idle(1);
+        assertEquals(1, holds);
+
+        helper.move(0, 0);
+        assertEquals(1, leaves);
+
+        helper.move(centre[0], centre[1]);
+        helper.idle(PeekAndPop.HOLD_AND_RELEASE_DURATION);
+        helper.pop();
+        assertEquals(2, holds);
+        assertEquals(1, releases);
+    }
+
+    @Test
+    public void peekDuringPop_takesOverFromPop() throws Exception {
+        helper.peek();
+        helper.up();
+        helper.idle(PeekAndPop.ANIMATION_POP_DURATION / 2);
+
+        helper.peek();
+        assertEquals(2, peeks);
+        assertEquals(PeekAndPop.STATE_PEEKED, peekAndPop.getState());
+        assertEquals(View.VISIBLE, ((View) peekAndPop.getPeekView().getParent()).getVisibility());
+    }
+}
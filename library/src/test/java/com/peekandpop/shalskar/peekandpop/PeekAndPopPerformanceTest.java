@@ -0,0 +1,129 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that repeated gestures don't start threads or allocate in proportion to the work done.
+ * <p/>
+ * Allocations are measured on the JVM, Robolectric's shadows allocate a little on their own, so
+ * the touch path limit is a budget rather than the zero allocations HandleTouchBenchmark checks on
+ * device. Blur buffer reuse is checked with the bitmap pool's counters instead.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PeekAndPopPerformanceTest {
+
+    private static final int GESTURES = 10;
+    private static final int MOVE_EVENTS = 1000;
+    private static final long MOVE_EVENT_BYTES_LIMIT = 512;
+
+    private PeekAndPopTestHelper helper;
+    private PeekAndPop peekAndPop;
+
+    @Before
+    public void setUp() throws Exception {
+        helper = new PeekAndPopTestHelper();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (peekAndPop != null)
+            peekAndPop.destroy();
+        helper.tearDown();
+    }
+
+    @Test
+    public void gestures_startNoThreads() throws Exception {
+        peekAndPop = helper.builder()
+                .blurBackground(true)
+                .blurEngine(new StackBlurEngine(1))
+                .build();
+        peekAndPop.addLongHoldView(android.R.id.text1, true);
+
+        // The first gesture may create anything that is created lazily
+        helper.peek();
+        helper.pop();
+
+        long threads = PeekAndPopTestHelper.startedThreads();
+        for (int i = 0; i < GESTURES; i++) {
+            helper.peek();
+            helper.move(0, 0);
+            helper.pop();
+        }
+        assertEquals(threads, PeekAndPopTestHelper.startedThreads());
+    }
+
+    @Test
+    public void handleTouch_moveAllocationsAreBounded() throws Exception {
+        peekAndPop = helper.builder()
+                .processHistoricalTouches(true)
+                .onLongHoldListener(new PeekAndPop.OnLongHoldListener() {
+                    @Override
+                    public void onEnter(View view, int position) {
+                    }
+
+                    @Override
+                    public void onLongHold(View view, int position) {
+                    }
+                })
+                .build();
+        peekAndPop.addLongHoldView(android.R.id.text1, true);
+        peekAndPop.addLongHoldView(android.R.id.text2, true);
+        helper.peek();
+
+        MotionEvent[] events = new MotionEvent[MOVE_EVENTS];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = helper.obtainMove(i % PeekAndPopTestHelper.WIDTH, (i * 7) % PeekAndPopTestHelper.HEIGHT);
+        }
+
+        replay(events);
+        long start = PeekAndPopTestHelper.allocatedBytes();
+        replay(events);
+        long bytesPerEvent = (PeekAndPopTestHelper.allocatedBytes() - start) / events.length;
+
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+        assertTrue("handleTouch allocated " + bytesPerEvent + " bytes per move event",
+                bytesPerEvent <= MOVE_EVENT_BYTES_LIMIT);
+    }
+
+    @Test
+    public void blur_reusesBuffersBetweenGestures() throws Exception {
+        peekAndPop = helper.builder()
+                .blurBackground(true)
+                .blurEngine(new StackBlurEngine(1))
+                .build();
+
+        helper.peek();
+        helper.pop();
+
+        BlurBitmapPool pool = BlurBitmapPool.getInstance();
+        pool.resetStatistics();
+        for (int i = 0; i < GESTURES; i++) {
+            helper.peek();
+            helper.pop();
+        }
+
+        // Every buffer is either kept by the blur builder or reused from the pool
+        assertEquals("Blur buffers allocated after the first peek, " + pool, 0, pool.getMissCount());
+    }
+
+    private void replay(MotionEvent[] events) {
+        View longClickView = helper.longClickView;
+        for (MotionEvent event : events) {
+            peekAndPop.handleTouch(longClickView, event, 0);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Sets up an activity with a long click view and scripts gestures on it for the Robolectric
+ * tests. The main looper is paused, so timers only run when the test advances the clock.
+ */
+class PeekAndPopTestHelper {
+
+    static final int WIDTH = 480;
+    static final int HEIGHT = 800;
+    static final int LONG_CLICK_VIEW_SIZE = 200;
+
+    final Activity activity;
+    final View longClickView;
+    private long downTime;
+
+    PeekAndPopTestHelper() {
+        activity = Robolectric.setupActivity(Activity.class);
+        FrameLayout content = new FrameLayout(activity);
+        longClickView = new View(activity);
+        content.addView(longClickView, new FrameLayout.LayoutParams(LONG_CLICK_VIEW_SIZE, LONG_CLICK_VIEW_SIZE));
+        activity.setContentView(content);
+        layout();
+        ShadowLooper.pauseMainLooper();
+    }
+
+    void tearDown() {
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    /**
+     * A builder for a peek layout with two hold views, android.R.id.text1 and android.R.id.text2.
+     */
+    PeekAndPop.Builder builder() {
+        return new PeekAndPop.Builder(activity)
+                .peekLayout(android.R.layout.simple_list_item_2)
+                .longClickViews(longClickView)
+                .blurBackground(false);
+    }
+
+    /**
+     * Measure and lay out the whole window, Robolectric doesn't do this by itself.
+     */
+    void layout() {
+        View decorView = activity.getWindow().getDecorView();
+        decorView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        decorView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    void idle(long millis) {
+        ShadowLooper.idleMainLooper(millis);
+    }
+
+    void down() {
+        downTime = SystemClock.uptimeMillis();
+        touch(MotionEvent.ACTION_DOWN, LONG_CLICK_VIEW_SIZE / 2, LONG_CLICK_VIEW_SIZE / 2);
+    }
+
+    void move(float x, float y) {
+        touch(MotionEvent.ACTION_MOVE, x, y);
+    }
+
+    void up() {
+        touch(MotionEvent.ACTION_UP, LONG_CLICK_VIEW_SIZE / 2, LONG_CLICK_VIEW_SIZE / 2);
+    }
+
+    MotionEvent obtainMove(float x, float y) {
+        return MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_MOVE, x, y, 0);
+    }
+
+    private void touch(int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action, x, y, 0);
+        longClickView.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Long click until the peek has finished animating in.
+     */
+    void peek() {
+        down();
+        idle(PeekAndPop.LONG_CLICK_DURATION);
+        layout();
+        idle(PeekAndPop.ANIMATION_PEEK_DURATION + 50);
+    }
+
+    /**
+     * Release until the pop has finished animating out.
+     */
+    void pop() {
+        up();
+        idle(PeekAndPop.ANIMATION_POP_DURATION + 50);
+    }
+
+    /**
+     * @return the centre of the view on screen
+     */
+    static int[] centreOf(View view) {
+        int[] location = new int[2];
+        view.getLocationOnScreen(location);
+        location[0] += view.getWidth() / 2;
+        location[1] += view.getHeight() / 2;
+        return location;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far
+     */
+    static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @return the number of threads started by the JVM so far
+     */
+    static long startedThreads() {
+        return ManagementFactory.getThreadMXBean().getTotalStartedThreadCount();
+    }
+}
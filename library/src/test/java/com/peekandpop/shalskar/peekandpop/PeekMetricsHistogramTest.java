@@ -0,0 +1,49 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PeekMetricsHistogramTest {
+
+    @Test
+    public void histogram_emptyIsNaN() throws Exception {
+        PeekMetricsRecorder.Histogram histogram = new PeekMetricsRecorder.Histogram();
+        assertEquals(0, histogram.getCount());
+        assertTrue(Float.isNaN(histogram.getMean()));
+        assertTrue(Float.isNaN(histogram.getPercentile(50)));
+    }
+
+    @Test
+    public void histogram_tracksCountMeanAndMax() throws Exception {
+        PeekMetricsRecorder.Histogram histogram = new PeekMetricsRecorder.Histogram();
+        histogram.record(2);
+        histogram.record(4);
+        histogram.record(12);
+        assertEquals(3, histogram.getCount());
+        assertEquals(6f, histogram.getMean(), 0.001f);
+        assertEquals(12f, histogram.getMax(), 0.001f);
+    }
+
+    @Test
+    public void histogram_percentileIsBucketUpperBound() throws Exception {
+        PeekMetricsRecorder.Histogram histogram = new PeekMetricsRecorder.Histogram();
+        for (int i = 0; i < 9; i++) {
+            histogram.record(3);
+        }
+        histogram.record(150);
+        assertEquals(4f, histogram.getPercentile(50), 0.001f);
+        assertEquals(4f, histogram.getPercentile(90), 0.001f);
+        assertEquals(150f, histogram.getPercentile(99), 0.001f);
+    }
+
+    @Test
+    public void histogram_resetClearsValues() throws Exception {
+        PeekMetricsRecorder.Histogram histogram = new PeekMetricsRecorder.Histogram();
+        histogram.record(5);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertTrue(Float.isNaN(histogram.getMax()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.peekandpop.shalskar.peekandpop;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StackBlurEngineTest {
+
+    @Test
+    public void blur_solidImageIsUnchanged() throws Exception {
+        int[] pixels = filled(40, 30, 0xff336699);
+        new StackBlurEngine(1).blur(pixels, 40, 30, 6);
+        assertArrayEquals(filled(40, 30, 0xff336699), pixels);
+    }
+
+    @Test
+    public void blur_radiusBelowOneIsUnchanged() throws Exception {
+        int[] pixels = random(20, 20, 1);
+        int[] expected = pixels.clone();
+        new StackBlurEngine(1).blur(pixels, 20, 20, 0);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void blur_spreadsSinglePixelSymmetrically() throws Exception {
+        int size = 21;
+        int radius = 3;
+        int[] pixels = filled(size, size, 0xff000000);
+        pixels[10 * size + 10] = 0xffffffff;
+
+        new StackBlurEngine(1).blur(pixels, size, size, radius);
+
+        int centre = red(pixels[10 * size + 10]);
+        assertTrue(centre > 0 && centre < 255);
+        for (int offset = 1; offset <= radius; offset++) {
+            assertEquals(red(pixels[10 * size + 10 - offset]), red(pixels[10 * size + 10 + offset]));
+            assertEquals(red(pixels[(10 - offset) * size + 10]), red(pixels[(10 + offset) * size + 10]));
+            assertTrue(red(pixels[10 * size + 10 + offset]) <= centre);
+        }
+        assertEquals(0, red(pixels[10 * size + 10 + radius + 1]));
+        assertEquals(0xff, pixels[0] >>> 24);
+    }
+
+    @Test
+    public void blur_lineMatchesTriangleKernel() throws Exception {
+        int length = 12;
+        int radius = 2;
+        int[] src = new int[length];
+        for (int i = 0; i < length; i++) {
+            src[i] = i * 20;
+        }
+        int[] dst = new int[length];
+
+        StackBlurEngine.blurLine(src, dst, 0, 1, length, radius);
+
+        for (int i = 0; i < length; i++) {
+            int sum = 0;
+            for (int k = -radius; k <= radius; k++) {
+                int index = Math.max(0, Math.min(length - 1, i + k));
+                sum += src[index] * (radius + 1 - Math.abs(k));
+            }
+            int divisor = (radius + 1) * (radius + 1);
+            assertEquals((sum + divisor / 2) / divisor, dst[i] & 0xff);
+        }
+    }
+
+    @Test
+    public void blur_parallelMatchesSerial() throws Exception {
+        int width = 120;
+        int height = 90;
+        int[] serial = random(width, height, 42);
+        int[] parallel = serial.clone();
+
+        new StackBlurEngine(1).blur(serial, width, height, 6);
+        new StackBlurEngine(4).blur(parallel, width, height, 6);
+
+        assertArrayEquals(serial, parallel);
+    }
+
+    @Test
+    public void blur_reusesEngineForDifferentSizes() throws Exception {
+        StackBlurEngine engine = new StackBlurEngine(2);
+        int[] large = filled(64, 64, 0xff112233);
+        int[] small = filled(8, 8, 0xff445566);
+
+        engine.blur(large, 64, 64, 4);
+        engine.blur(small, 8, 8, 4);
+
+        assertArrayEquals(filled(8, 8, 0xff445566), small);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blur_tooFewPixelsThrows() throws Exception {
+        new StackBlurEngine(1).blur(new int[10], 4, 4, 2);
+    }
+
+    private static int[] filled(int width, int height, int color) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = color;
+        }
+        return pixels;
+    }
+
+    private static int[] random(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int red(int color) {
+        return (color >> 16) & 0xff;
+    }
+}